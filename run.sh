@@ -2,4 +2,9 @@
 
 mvn -q clean
 mvn -q compile
-mvn -q exec:exec -Dexec.mainClass=cs1302uga.api/cs1302.api.${1-ApiDriver}
+MODULES=java.base
+if [ "${1-ApiDriver}" = LoadTest ]; then
+    MODULES=jdk.httpserver
+fi
+mvn -q exec:exec -Dexec.mainClass=cs1302uga.api/cs1302.api.${1-ApiDriver} \
+    -Dexec.addModules=${MODULES}
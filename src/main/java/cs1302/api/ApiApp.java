@@ -8,34 +8,115 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.Priority;
 import javafx.scene.control.Label;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.Tooltip;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.geometry.Pos;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.stage.Stage;
 import javafx.util.Duration;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Optional;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * Represents a JavaFX applicaion that takes the a user input to gather recipes about that dish.
  * The cuisine type from the recipe API will be used in a second news API to collect news articles
- * about the dish and presents the information on the screen.
+ * about the dish and presents the information on the screen. Cookbooks related to the dish
+ * are collected from the Open Library Search API at the same time. Every search lives in its
+ * own tab, so several dishes can be searched and compared at once.
  */
 public class ApiApp extends Application {
-    private NewsSourceAPI newsSourceApi = new NewsSourceAPI();
-    private RecipeAPI recipeApi = new RecipeAPI();
 
-    private Optional<RecipeAPI.RecipeResponse> recipeResponse;
-    private Optional<NewsSourceAPI.NewsResponse> newsResponse;
-    private List<RecipeAPI.RecipeResponse.Hit> hits;
+    /**
+     * The state of one search tab. Each tab keeps its own results and navigation position,
+     * while every tab shares the app's sources, and so their caches and rate limits, and
+     * the app's bounded {@link FairExecutor}. The background work of a tab runs in its own
+     * lane of that executor, one task at a time.
+     */
+    private static class SearchTab {
+        private final Tab tab = new Tab("New search");
+        private final VBox content = new VBox();
+        private final Label label =
+            new Label("Search in a dish to get recipes and a related article.");
+        private final StackPane recipePane = new StackPane();
+        private final StackPane newsPane = new StackPane();
+        private final StackPane cookbookPane = new StackPane();
+        private final FairExecutor.Lane lane;
+
+        private Optional<RecipeAPI.RecipeResponse> recipeResponse = Optional.empty();
+        private Optional<NewsSourceAPI.NewsResponse> newsResponse = Optional.empty();
+        private Optional<OpenLibrarySearchApi.OpenLibraryResult> cookbookResponse =
+            Optional.empty();
+        private List<RecipeAPI.RecipeResponse.Hit> hits;
+        private List<RecipeView> views = List.of();
+        private int currentIndex;
+        private int searchId;
+        private boolean searching;
+        private String term;
+        private String declinedCorrection;
+
+        /**
+         * Constructs an empty {@code SearchTab}.
+         *
+         * @param lane The lane the tab's background work runs in.
+         */
+        SearchTab(FairExecutor.Lane lane) {
+            this.lane = lane;
+            label.setStyle(
+                "-fx-font-size: 16;" +
+                "-fx-padding: 8;"
+            );
+            content.getChildren().add(label);
+            tab.setContent(content);
+            tab.setUserData(this);
+        } // SearchTab
+    } // SearchTab
+
+    private ResultSource<NewsSourceAPI.NewsResponse> newsSource =
+        ResultSources.get(NewsSourceAPI.NAME, NewsSourceAPI.NewsResponse.class);
+    private SearchAggregator aggregator = new SearchAggregator();
+    private NutritionRanker ranker = new NutritionRanker(RecipeAPI.provider());
+    private QueryAutocomplete autocomplete =
+        new QueryAutocomplete(QueryAutocomplete.defaultFile());
+    private TaskRuntime tasks = new TaskRuntime("search-worker",
+        Math.max(2, Runtime.getRuntime().availableProcessors()), MAX_QUEUED_PER_TAB);
+    private CacheWarmer warmer =
+        new CacheWarmer(RecipeAPI.provider(), NewsSourceAPI.provider(), tasks);
+
+    /** The most recipes kept when ranking by nutrition. */
+    private static final int RANKED_RECIPES = 10;
+    /** The most calories per serving of a recipe kept by the light filter. */
+    private static final double LIGHT_CALORIES = 600;
+    /** The most completions suggested under the search bar. */
+    private static final int SUGGESTIONS = 8;
+    /** The most background tasks one tab may have waiting. */
+    private static final int MAX_QUEUED_PER_TAB = 1024;
+    /** How long searching is paused once the recipe source hits its rate limit. */
+    private static final long COOLDOWN_SECONDS = 60;
 
-    private int currentIndex;
-    private String term;
+    private int openedTabs;
+    private ScheduledFuture<?> cooldown;
+    private Optional<SessionSnapshot> restored = Optional.empty();
+    private boolean suggesting = true;
 
     private Stage stage;
     private Scene scene;
@@ -46,11 +127,15 @@ public class ApiApp extends Application {
     private HBox buttonBox;
     private VBox bottom;
     private StackPane stack;
+    private TabPane tabs;
 
     private TextField searchBar;
-    private Label label;
+    private ContextMenu suggestions;
+    private ComboBox<NutritionRanker.Sort> sortBox;
+    private CheckBox lightOnly;
     private Label apiLabel;
     private Button search;
+    private Button newTab;
     private Button back;
     private Button next;
 
@@ -59,20 +144,22 @@ public class ApiApp extends Application {
      * constructor is executed in Step 2 of the JavaFX Application Life-Cycle.
      */
     public ApiApp() {
-        this.currentIndex = 0;
-
         this.root = new VBox();
         this.top = new VBox(475);
         this.searchs = new HBox(5);
         this.buttonBox = new HBox(5);
         this.bottom = new VBox(3);
         this.stack = new StackPane();
+        this.tabs = new TabPane();
 
         this.searchBar = new TextField("search a dish (e.g. hummus, dumpling, etc)");
-        this.label = new Label("Search in a dish to get recipes and a related article.");
+        this.suggestions = new ContextMenu();
+        this.sortBox = new ComboBox<>();
+        this.lightOnly = new CheckBox("Light");
         this.apiLabel = new Label("Recipes provided by Edamam Recipe Search API "
-            + " / News provided by NewsAPI");
+            + " / News provided by NewsAPI / Books provided by Open Library");
         this.search = new Button("Search");
+        this.newTab = new Button("+");
         this.back = new Button("Back");
         this.next = new Button("Next");
     } // ApiApp
@@ -80,13 +167,21 @@ public class ApiApp extends Application {
     /**
      * Initializes the screen graph and sets up the nodes. It loads the background image,
      * adds the various buttons, and the textfield. It assigns action events to the buttons
-     * and ensures the next and back button start off disabled.
+     * and ensures the next and back button start off disabled. Every result source is
+     * warmed up in the background meanwhile, so the first search does not pay for
+     * connection setup, and the snapshot of the last session is read. The most popular
+     * dishes are kept cached from then on whenever the user is idle.
      *
      * {@inheritDoc}
      */
     @Override
     public void init() {
         System.out.println("init");
+        for (ResultSource<?> source : ResultSources.all()) {
+            source.warmUp();
+        } // for
+        restored = SessionSnapshot.read(SessionSnapshot.defaultFile());
+        warmer.start();
 
         Image backgroundImage = new Image("file:resources/background.png");
         ImageView background = new ImageView(backgroundImage);
@@ -95,13 +190,29 @@ public class ApiApp extends Application {
         back.setDisable(true);
         next.setDisable(true);
         search.setOnAction(e -> handleSearch());
+        newTab.setOnAction(e -> handleNewTab());
         back.setOnAction(e -> handleBack());
         next.setOnAction(e -> handleNext());
+        searchBar.setOnAction(e -> handleSearch());
+        searchBar.textProperty().addListener((observable, old, text) -> suggest(text));
+        tabs.getSelectionModel().selectedItemProperty().addListener((observable, old, tab) -> {
+            if (tab != null) {
+                SearchTab selected = (SearchTab) tab.getUserData();
+                setSearchText(selected.term == null ? "" : selected.term);
+                refreshButtons();
+            } // if
+        });
 
         stack.getChildren().addAll(background, root, top);
-        root.getChildren().add(label);
+        root.getChildren().add(tabs);
         top.getChildren().addAll(searchs, bottom);
-        searchs.getChildren().addAll(searchBar, search);
+        sortBox.getItems().addAll(NutritionRanker.Sort.values());
+        sortBox.setValue(NutritionRanker.Sort.BEST_MATCH);
+        lightOnly.setTooltip(new Tooltip("Only recipes with at most "
+            + (int) LIGHT_CALORIES + " calories per serving"));
+        newTab.setTooltip(new Tooltip("Open a new search tab"));
+        searchs.getChildren().addAll(searchBar, sortBox, lightOnly, search, newTab);
+        searchs.setAlignment(Pos.CENTER_LEFT);
         bottom.getChildren().addAll(apiLabel, buttonBox);
         buttonBox.getChildren().addAll(back, next);
 
@@ -110,6 +221,7 @@ public class ApiApp extends Application {
         HBox.setHgrow(back, Priority.ALWAYS);
         HBox.setHgrow(next, Priority.ALWAYS);
         HBox.setHgrow(searchBar, Priority.ALWAYS);
+        VBox.setVgrow(tabs, Priority.ALWAYS);
 
         initStyle();
     } // init
@@ -129,16 +241,23 @@ public class ApiApp extends Application {
             "-fx-pref-height: 15;" +
             "-fx-font-size: 14;"
         );
+        newTab.setStyle(
+            "-fx-font-size: 14;" +
+            "-fx-font-weight: bold;"
+        );
+        sortBox.setStyle(
+            "-fx-font-size: 14;"
+        );
+        lightOnly.setStyle(
+            "-fx-font-size: 14;" +
+            "-fx-font-weight: bold;"
+        );
         back.setStyle(
             "-fx-font-size: 14;"
         );
         next.setStyle(
             "-fx-font-size: 14;"
         );
-        label.setStyle(
-            "-fx-font-size: 16;" +
-            "-fx-padding: 8;"
-        );
         top.setPadding(new Insets(5));
         root.setStyle(
             "-fx-background-color: #FAF9F6;" +
@@ -150,6 +269,8 @@ public class ApiApp extends Application {
     /**
      * Initializes the primary stage and sets up the main scene. It adds the stack
      * variable to the scene variable and ensures the stage is not resizable.
+     * Pressing Ctrl+Shift+T dumps the recent request trace to standard output. The last
+     * session's results are shown again in the first tab if a snapshot of them was found.
      *
      * {@inheritDoc}
      */
@@ -157,6 +278,13 @@ public class ApiApp extends Application {
     public void start(Stage stage) {
         this.stage = stage;
         scene = new Scene(stack);
+        scene.getAccelerators().put(
+            new KeyCodeCombination(KeyCode.T, KeyCombination.SHORTCUT_DOWN,
+                KeyCombination.SHIFT_DOWN),
+            () -> tasks.submit("trace-dump", () -> RequestTrace.get().dump(System.out)));
+
+        SearchTab first = openTab();
+        restored.ifPresent(snapshot -> restore(first, snapshot));
 
         // setup stage
         stage.setTitle("ApiApp!");
@@ -169,150 +297,543 @@ public class ApiApp extends Application {
         Platform.runLater(() -> this.stage.setResizable(false));
     } // start
 
+    /**
+     * Notes in the request trace how the requests of every result source were served and
+     * how much background work was left once the application has stopped, and writes out
+     * the rest of the request trace, the search history and a snapshot of the results being shown.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop() {
+        RequestTrace trace = RequestTrace.get();
+        for (ResultSource<?> source : ResultSources.all()) {
+            trace.note(source.getName() + ": " + source.getMetrics());
+        } // for
+        trace.note("tasks: " + tasks);
+        autocomplete.save();
+        saveSession();
+        trace.flush();
+    } // stop
+
+    /**
+     * Writes a snapshot of the results shown in the selected tab, or removes the last
+     * snapshot if no results are shown. Only the recipe being shown and the views around
+     * it that have already been built are kept, so that no cached hit is decoded on the
+     * JavaFX Application Thread while the app exits.
+     */
+    private void saveSession() {
+        try {
+            SearchTab tab = current();
+            if (tab == null || tab.views.isEmpty()) {
+                Files.deleteIfExists(SessionSnapshot.defaultFile());
+            } else {
+                int from = Math.max(0, Math.min(tab.currentIndex, tab.views.size() - 1));
+                int to = from + 1;
+                while (from > 0 && RecipeView.isBuilt(tab.views, from - 1)) {
+                    from--;
+                } // while
+                while (to < tab.views.size() && RecipeView.isBuilt(tab.views, to)) {
+                    to++;
+                } // while
+                new SessionSnapshot(tab.term, tab.currentIndex - from,
+                    tab.views.subList(from, to), tab.newsResponse, tab.cookbookResponse)
+                    .write(SessionSnapshot.defaultFile());
+            } // if
+        } catch (IOException e) {
+            e.printStackTrace();
+        } // try
+    } // saveSession
+
+    /**
+     * Shows the results of the last session again, exactly as they were left, without
+     * calling any API.
+     *
+     * @param tab The tab to show the results in.
+     * @param snapshot The snapshot of the last session.
+     */
+    private void restore(SearchTab tab, SessionSnapshot snapshot) {
+        if (snapshot.getViews().isEmpty()) {
+            return;
+        } // if
+        tab.term = snapshot.getTerm();
+        tab.views = snapshot.getViews();
+        tab.currentIndex =
+            Math.max(0, Math.min(snapshot.getCurrentIndex(), tab.views.size() - 1));
+        tab.cookbookResponse = snapshot.getCookbooks();
+        if (tab.term != null) {
+            tab.tab.setText(tab.term);
+            setSearchText(tab.term);
+        } // if
+        updateRecipe(tab);
+        showNews(tab, snapshot.getNews());
+        updateCookbooks(tab);
+        tab.content.getChildren().setAll(tab.recipePane, tab.newsPane, tab.cookbookPane);
+        refreshButtons();
+    } // restore
+
+    /**
+     * Opens a new, empty search tab and selects it. Closing a tab drops its queued
+     * background work and ignores any of its results still arriving; closing the last
+     * tab opens a fresh one.
+     *
+     * @return The new tab.
+     */
+    private SearchTab openTab() {
+        SearchTab tab = new SearchTab(tasks.lane("tab-" + ++openedTabs));
+        tab.tab.setOnClosed(e -> {
+            tab.searchId++;
+            tab.lane.close();
+            if (tabs.getTabs().isEmpty()) {
+                openTab();
+            } // if
+        });
+        tabs.getTabs().add(tab.tab);
+        tabs.getSelectionModel().select(tab.tab);
+        return tab;
+    } // openTab
+
+    /**
+     * Gets the search tab that is currently selected.
+     *
+     * @return The selected tab, or {@code null} if there is none.
+     */
+    private SearchTab current() {
+        Tab selected = tabs.getSelectionModel().getSelectedItem();
+        return selected == null ? null : (SearchTab) selected.getUserData();
+    } // current
+
+    /**
+     * Enables the buttons that apply to the selected tab. Searching is paused for every tab
+     * while the recipe source cools down from its rate limit, since all tabs share it.
+     */
+    private void refreshButtons() {
+        SearchTab tab = current();
+        if (tab == null) {
+            return;
+        } // if
+        search.setDisable(tab.searching || cooldown != null);
+        back.setDisable(tab.searching || tab.currentIndex <= 0);
+        next.setDisable(tab.searching || tab.currentIndex >= 2
+            || tab.currentIndex >= tab.views.size() - 1);
+    } // refreshButtons
+
+    /**
+     * Handles the new tab button action, opening an empty search tab.
+     */
+    public void handleNewTab() {
+        openTab();
+        searchBar.requestFocus();
+    } // handleNewTab
+
     /**
      * Handles the Back button action, updating the UI to show the previous recipe and news.
      */
     public void handleBack() {
-        currentIndex--;
-        updateButtons();
-        back.setDisable(currentIndex <= 0);
-        next.setDisable(currentIndex >= 2 || currentIndex >= hits.size() - 1);
+        SearchTab tab = current();
+        tab.currentIndex--;
+        updateButtons(tab);
+        refreshButtons();
     } // handleBack
 
     /**
      * Handles the Next button action, updating the UI to show the next recipe and news.
      */
     public void handleNext() {
-        currentIndex++;
-        updateButtons();
-        back.setDisable(currentIndex <= 0);
-        next.setDisable(currentIndex >= 2 || currentIndex >= hits.size() - 1);
+        SearchTab tab = current();
+        tab.currentIndex++;
+        updateButtons(tab);
+        refreshButtons();
     } // handleNext
 
     /**
      * Handles the Search button action, beginning the search for recipes based on the user's
-     * input as well as news results based on the information given by the recipe.
+     * input as well as news results based on the information given by the recipe. The
+     * search runs in the selected tab; other tabs keep their searches going meanwhile. A
+     * query is searched as typed, and a known query close to it is offered as a suggestion.
+     * Only a query that has already found no recipes is searched as the known query
+     * instead, and the user is offered to search for what they typed; searching for the
+     * same text again then keeps it as typed.
      */
     public void handleSearch() {
-        term = searchBar.getText().trim();
-        search.setDisable(true);
-        next.setDisable(true);
-        back.setDisable(true);
-        label.setText("Loading...");
-        search();
+        SearchTab tab = current();
+        String typed = searchBar.getText().trim();
+        suggestions.hide();
+        tab.searching = true;
+        tab.label.setText("Loading...");
+        refreshButtons();
+        if (typed.equals(tab.declinedCorrection)) {
+            tab.term = typed;
+            search(tab);
+            return;
+        } // if
+        autocomplete.correct(typed).thenAccept(correction -> Platform.runLater(() -> {
+            boolean automatic =
+                correction.map(QueryAutocomplete.Correction::isAutomatic).orElse(false);
+            tab.term = automatic ? correction.get().getTerm() : typed;
+            tab.declinedCorrection = automatic ? typed : null;
+            if (correction.isPresent() && tab == current()) {
+                MenuItem offer;
+                if (automatic) {
+                    setSearchText(tab.term);
+                    offer = new MenuItem("Search instead for \"" + typed + "\"");
+                    offer.setOnAction(e -> {
+                        setSearchText(typed);
+                        handleSearch();
+                    });
+                } else {
+                    String term = correction.get().getTerm();
+                    offer = new MenuItem("Did you mean \"" + term + "\"?");
+                    offer.setOnAction(e -> {
+                        setSearchText(term);
+                        handleSearch();
+                    });
+                } // if
+                suggestions.getItems().setAll(offer);
+                suggestions.show(searchBar, Side.BOTTOM, 0, 0);
+            } // if
+            search(tab);
+        }));
     } // handleSearch
 
+    /**
+     * Shows the known searches completing the text in the search bar. The completions are
+     * found in the background and dropped if the text has changed by the time they arrive.
+     *
+     * @param text The text in the search bar.
+     */
+    private void suggest(String text) {
+        if (!suggesting || !searchBar.isFocused() || text.isBlank()) {
+            suggestions.hide();
+            return;
+        } // if
+        autocomplete.suggest(text, SUGGESTIONS).thenAccept(found -> Platform.runLater(() -> {
+            if (!text.equals(searchBar.getText())) {
+                return;
+            } // if
+            if (found.isEmpty()) {
+                suggestions.hide();
+                return;
+            } // if
+            List<MenuItem> items = new ArrayList<>(found.size());
+            for (String completion : found) {
+                MenuItem item = new MenuItem(completion);
+                item.setOnAction(e -> {
+                    setSearchText(completion);
+                    handleSearch();
+                });
+                items.add(item);
+            } // for
+            suggestions.getItems().setAll(items);
+            if (!suggestions.isShowing()) {
+                suggestions.show(searchBar, Side.BOTTOM, 0, 0);
+            } // if
+        }));
+    } // suggest
+
+    /**
+     * Replaces the text in the search bar without suggesting completions for it.
+     *
+     * @param text The new text.
+     */
+    private void setSearchText(String text) {
+        suggesting = false;
+        searchBar.setText(text);
+        searchBar.positionCaret(text.length());
+        suggesting = true;
+    } // setSearchText
+
     /**
      * Initiates the search for recipes given the user's input. Using the cuisine type of the
      * given recipe, it will search for related articles that have that name within its contents.
-     * Will show an alert if no recipes or news articles are present.
-     */
-    public void search() {
-        recipeResponse = recipeApi.searchRecipes(term);
-
-        if (RecipeAPI.getRateLimitReached() || NewsSourceAPI.getRateLimitReached()) {
-            run(() -> {
-                try {
-                    Thread.sleep(60000);
-                    Platform.runLater(() -> {
-                        search.setDisable(false);
-                        back.setDisable(currentIndex <= 0);
-                        next.setDisable(currentIndex >= 2 || currentIndex >= hits.size() - 1);
-                    });
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } // try
-            });
-        } else {
-            search.setDisable(false);
-            next.setDisable(false);
-
-            if (recipeResponse.isPresent()) {
-                RecipeAPI.RecipeResponse response = recipeResponse.get();
-                hits = response.getHits();
-
-                if (hits != null && !hits.isEmpty()) {
-                    currentIndex = 0;
-                    updateRecipe();
-                    back.setDisable(true);
-                    next.setDisable(hits.size() <= 1);
-
-                    List<String> cuisineList = response.getHits().get(0)
-                        .getRecipe().getCuisineType();
-                    newsResponse = newsSourceApi.searchNews(
-                        cuisineList);
-
-                    if (newsResponse.isPresent()) {
-                        NewsSourceAPI.NewsResponse news = newsResponse.get();
-                        if (news != null) {
-                            List<NewsSourceAPI.NewsResponse.Article> articles = news.getArticles();
-                            if (articles != null && !articles.isEmpty()) {
-                                currentIndex = 0;
-                                updateNews();
-                            } // if
-                        } else {
-                            root.getChildren().clear();
-                            root.getChildren().add(label);
-                            next.setDisable(true);
-                            label.setText("No articles were found! Try again with another dish.");
-                        } // if
+     * Cookbooks about the dish are searched for at the same time. Each part of the results is
+     * shown as soon as it arrives, so the recipe never waits on the slower sources; the first
+     * recipe is shown while the rest of the recipes are still downloading. The text of every
+     * recipe is prepared in the tab's lane as it arrives. When a sort or filter is chosen, the
+     * recipes are ranked by nutrition before any of them is shown. Work still queued for the
+     * tab's previous search is cancelled.
+     *
+     * @param tab The tab to search in.
+     */
+    public void search(SearchTab tab) {
+        int id = ++tab.searchId;
+        tab.lane.clear();
+        warmer.recordActivity();
+        String term = tab.term;
+        tab.tab.setText(term);
+        NutritionRanker.Sort sort = sortBox.getValue();
+        Predicate<NutritionRanker.RankedRecipe> filter = lightOnly.isSelected()
+            ? recipe -> recipe.getCaloriesPerServing() <= LIGHT_CALORIES
+            : recipe -> true;
+        boolean ranking = sort != NutritionRanker.Sort.BEST_MATCH || lightOnly.isSelected();
+
+        // only touched by tasks of the tab's lane, which run one at a time; a hit the lane
+        // cannot take, such as once the tab is closed, is dropped, since it is still in the
+        // complete response
+        List<RecipeAPI.RecipeResponse.Hit> streamedHits = new ArrayList<>();
+        List<RecipeView> streamedViews = new ArrayList<>();
+        SearchAggregator.Search pending = aggregator.search(term, hit -> tab.lane.offer(() -> {
+            RecipeView view = RecipeView.of(hit);
+            streamedHits.add(hit);
+            streamedViews.add(view);
+            if (!ranking && streamedViews.size() == 1) {
+                Platform.runLater(() -> {
+                    if (id == tab.searchId) {
+                        showFirstRecipe(tab, view);
                     } // if
+                });
+            } // if
+        }));
+        pending.getRecipes().thenAcceptAsync(result -> {
+            // recipes that missed the deadline still show the hits that did arrive
+            Optional<RecipeAPI.RecipeResponse> response = result.isPresent()
+                || streamedHits.isEmpty()
+                ? result
+                : Optional.of(new RecipeAPI.RecipeResponse(List.copyOf(streamedHits)));
+            if (!ranking) {
+                present(tab, id, response, pending.isRecipesRateLimited(),
+                    prepareViews(response, streamedViews),
+                    pending.getNews(), pending.getCookbooks());
+                return;
+            } // if
+
+            List<RecipeAPI.RecipeResponse.Hit> found = response
+                .map(RecipeAPI.RecipeResponse::getHits)
+                .orElse(List.of());
+            CompletableFuture<List<RecipeAPI.RecipeResponse.Hit>> ranked = ranker.rank(
+                term, found, sort, filter, RANKED_RECIPES, pending.getBudgetDeadline());
+            ranked.thenAcceptAsync(best -> {
+                Optional<RecipeAPI.RecipeResponse> top =
+                    response.map(ignored -> new RecipeAPI.RecipeResponse(best));
+                List<RecipeView> prepared = prepareViews(top, List.of());
+                String cuisine = prepared.isEmpty() ? null : prepared.get(0).getCuisine();
+                CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> news;
+                if (cuisine == null) {
+                    news = CompletableFuture.completedFuture(Optional.empty());
+                } else if (pending.getNewsCuisine().getNow(Optional.empty())
+                    .filter(cuisine::equals).isPresent()) {
+                    // the search already asked for news about this cuisine
+                    news = pending.getNews();
                 } else {
-                    root.getChildren().clear();
-                    root.getChildren().add(label);
-                    next.setDisable(true);
-                    label.setText("No recipes were found! Try again with another dish.");
+                    news = aggregator.searchNews(cuisine);
                 } // if
+                present(tab, id, top, pending.isRecipesRateLimited(), prepared, news,
+                    pending.getCookbooks());
+            }, tab.lane);
+        }, tab.lane);
+    } // search
+
+    /**
+     * Shows the recipes of a search on the JavaFX Application Thread, unless a newer search
+     * has started in the same tab in the meantime.
+     *
+     * @param tab The tab the search belongs to.
+     * @param id The id of the search.
+     * @param response The recipe results.
+     * @param rateLimited Whether this search's recipe request was refused by the rate limit.
+     * @param prepared The views of every recipe in the results.
+     * @param news The news for the first recipe.
+     * @param cookbooks The cookbooks for the dish.
+     */
+    private void present(
+        SearchTab tab,
+        int id,
+        Optional<RecipeAPI.RecipeResponse> response,
+        boolean rateLimited,
+        List<RecipeView> prepared,
+        CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> news,
+        CompletableFuture<Optional<OpenLibrarySearchApi.OpenLibraryResult>> cookbooks) {
+        Platform.runLater(() -> {
+            if (id == tab.searchId) {
+                showRecipes(tab, response, rateLimited, prepared, news, cookbooks, id);
             } // if
+        });
+    } // present
+
+    /**
+     * Returns the views of every recipe in a response, reusing the views already prepared
+     * while the recipes were streamed in. The views of the other recipes, such as those
+     * served from the cache, are only prepared once they are about to be shown; the first
+     * two are prepared here, since this runs in the tab's lane.
+     *
+     * @param response The recipe results.
+     * @param streamed The views prepared so far.
+     * @return The views of every recipe, in order.
+     */
+    private static List<RecipeView> prepareViews(
+        Optional<RecipeAPI.RecipeResponse> response,
+        List<RecipeView> streamed) {
+        List<RecipeAPI.RecipeResponse.Hit> all = response
+            .map(RecipeAPI.RecipeResponse::getHits)
+            .orElse(List.of());
+        if (all.size() == streamed.size()) {
+            return List.copyOf(streamed);
         } // if
-    } // searchRecipe
-
-    /**
-     * Upates the UI to display information about a recipe based on the provided response.
-     */
-    public void updateRecipe() {
-        root.getChildren().clear();
-
-        if (recipeResponse.isPresent()) {
-            RecipeAPI.RecipeResponse response = recipeResponse.get();
-            hits = response.getHits();
-
-            if (hits != null && !hits.isEmpty()) {
-                RecipeAPI.RecipeResponse.Hit hit = hits.get(currentIndex);
-                RecipeAPI.RecipeResponse.Hit.Recipe recipe = hit.getRecipe();
-
-                if (recipe != null) {
-                    String title = recipe.getLabel();
-                    String url = recipe.getUrl();
-                    double yield = recipe.getYield();
-                    double calories = recipe.getCalories();
-                    List<RecipeAPI.RecipeResponse.Hit.Recipe.Ingredient> ingredientsList =
-                        recipe.getIngredients();
-
-                    VBox newInfo = createRecipeInfoBox(
-                        title,
-                        url,
-                        yield,
-                        calories,
-                        ingredientsList);
-                    StackPane infoStack = new StackPane();
-                    infoStack.getChildren().add(newInfo);
-                    root.getChildren().add(infoStack);
-                } // if
+        List<RecipeView> views = RecipeView.lazy(all, streamed);
+        prepare(views, 0);
+        return views;
+    } // prepareViews
+
+    /**
+     * Builds the view at an index and the one after it, so that they are ready before the
+     * JavaFX Application Thread shows them. Must be called in the tab's lane.
+     *
+     * @param views The views of a search.
+     * @param index The index of the view about to be shown.
+     */
+    private static void prepare(List<RecipeView> views, int index) {
+        for (int i = index; i <= index + 1 && i < views.size(); i++) {
+            views.get(i);
+        } // for
+    } // prepare
+
+    /**
+     * Shows the first recipe of a search while the rest of the recipes are still
+     * downloading. Navigation stays disabled until every recipe has arrived.
+     *
+     * @param tab The tab the search belongs to.
+     * @param view The view of the first recipe.
+     */
+    private void showFirstRecipe(SearchTab tab, RecipeView view) {
+        tab.views = List.of(view);
+        tab.currentIndex = 0;
+        updateRecipe(tab);
+        showPlaceholder(tab.newsPane, "Loading news...");
+        tab.cookbookPane.getChildren().clear();
+        tab.content.getChildren().setAll(tab.recipePane, tab.newsPane, tab.cookbookPane);
+    } // showFirstRecipe
+
+    /**
+     * Shows the recipes of a search and waits for its news and cookbooks to fill in their
+     * panels. Will show an alert if no recipes are present. Searching is paused in every
+     * tab only if this search's own recipe request was refused by the rate limit.
+     *
+     * @param tab The tab the search belongs to.
+     * @param result The recipe results.
+     * @param rateLimited Whether this search's recipe request was refused by the rate limit.
+     * @param prepared The views of every recipe in the results.
+     * @param pendingNews The news for the first recipe.
+     * @param pendingCookbooks The cookbooks for the dish.
+     * @param id The id of the search.
+     */
+    private void showRecipes(
+        SearchTab tab,
+        Optional<RecipeAPI.RecipeResponse> result,
+        boolean rateLimited,
+        List<RecipeView> prepared,
+        CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> pendingNews,
+        CompletableFuture<Optional<OpenLibrarySearchApi.OpenLibraryResult>> pendingCookbooks,
+        int id) {
+        tab.recipeResponse = result;
+        tab.views = prepared;
+        tab.searching = false;
+
+        if (rateLimited) {
+            tab.content.getChildren().setAll(tab.label);
+            tab.label.setText("Searching is paused due to the recipe API's rate limits.");
+            startCooldown();
+        } else if (tab.recipeResponse.isPresent()) {
+            RecipeAPI.RecipeResponse response = tab.recipeResponse.get();
+            tab.hits = response.getHits();
+
+            if (tab.hits != null && !tab.hits.isEmpty()) {
+                autocomplete.recordQuery(tab.term);
+                warmer.recordSearch(tab.term);
+                tab.currentIndex = 0;
+                tab.newsResponse = Optional.empty();
+                tab.cookbookResponse = Optional.empty();
+                updateRecipe(tab);
+                showPlaceholder(tab.newsPane, "Loading news...");
+                tab.cookbookPane.getChildren().clear();
+                tab.content.getChildren().setAll(tab.recipePane, tab.newsPane, tab.cookbookPane);
+
+                pendingNews.thenAccept(news -> Platform.runLater(() -> {
+                    if (id == tab.searchId && tab.currentIndex == 0) {
+                        showNews(tab, news);
+                    } // if
+                }));
+                pendingCookbooks.thenAccept(cookbooks -> Platform.runLater(() -> {
+                    if (id == tab.searchId) {
+                        tab.cookbookResponse = cookbooks;
+                        updateCookbooks(tab);
+                    } // if
+                }));
+            } else {
+                autocomplete.recordEmpty(tab.term);
+                tab.content.getChildren().setAll(tab.label);
+                tab.label.setText("No recipes were found! Try again with another dish.");
             } // if
+        } else {
+            tab.content.getChildren().setAll(tab.label);
+            tab.label.setText("Recipes did not arrive in time. Please try again.");
+        } // if
+        refreshButtons();
+    } // showRecipes
+
+    /**
+     * Pauses searching in every tab until the recipe source's rate limit has had time to
+     * recover. A cooldown already under way is left to run out rather than restarted.
+     */
+    private void startCooldown() {
+        if (cooldown != null) {
+            return;
+        } // if
+        cooldown = tasks.schedule("recipe-cooldown", COOLDOWN_SECONDS, TimeUnit.SECONDS,
+            Platform::runLater, () -> {
+                cooldown = null;
+                refreshButtons();
+            });
+    } // startCooldown
+
+    /**
+     * Shows the news found for the current recipe of a tab, or a placeholder if none
+     * arrived within the search's budget.
+     *
+     * @param tab The tab to show the news in.
+     * @param news The news results.
+     */
+    private void showNews(SearchTab tab, Optional<NewsSourceAPI.NewsResponse> news) {
+        tab.newsResponse = news;
+        List<NewsSourceAPI.NewsResponse.Article> articles = news
+            .map(NewsSourceAPI.NewsResponse::getArticles)
+            .orElse(null);
+        if (articles != null && articles.size() > tab.currentIndex) {
+            updateNews(tab);
+        } else if (newsSource.isRateLimited()) {
+            showPlaceholder(tab.newsPane, "News is paused due to NewsAPI's rate limits.");
+        } else {
+            showPlaceholder(tab.newsPane, "No related news arrived in time.");
+        } // if
+    } // showNews
+
+    /**
+     * Upates the UI to display information about the current recipe from its prepared view.
+     * The title of every recipe shown is remembered for autocompletion.
+     *
+     * @param tab The tab to update.
+     */
+    public void updateRecipe(SearchTab tab) {
+        tab.recipePane.getChildren().clear();
+
+        if (tab.currentIndex < tab.views.size()) {
+            RecipeView view = tab.views.get(tab.currentIndex);
+            autocomplete.recordLabel(view.getTitle());
+            tab.recipePane.getChildren().add(createRecipeInfoBox(view));
         } // if
     } // updateRecipe
 
     /**
      * Updates the UI to display information about a news article based on the provided response.
+     *
+     * @param tab The tab to update.
      */
-    public void updateNews() {
-        if (newsResponse.isPresent()) {
-            NewsSourceAPI.NewsResponse news = newsResponse.get();
+    public void updateNews(SearchTab tab) {
+        if (tab.newsResponse.isPresent()) {
+            NewsSourceAPI.NewsResponse news = tab.newsResponse.get();
             List<NewsSourceAPI.NewsResponse.Article> articles = news.getArticles();
 
             if (articles != null && !articles.isEmpty()) {
-                NewsSourceAPI.NewsResponse.Article newsItem = articles.get(currentIndex);
+                NewsSourceAPI.NewsResponse.Article newsItem = articles.get(tab.currentIndex);
 
                 String title = newsItem.getTitle();
                 String url = newsItem.getUrl();
@@ -322,80 +843,106 @@ public class ApiApp extends Application {
                     title,
                     url,
                     content);
-                StackPane infoStack = new StackPane();
-                infoStack.getChildren().add(newInfo);
-                root.getChildren().add(infoStack);
+                tab.newsPane.getChildren().setAll(newInfo);
             } // if
         } // if
     } // updateNews
 
     /**
-     * Updates the UI components, including recipe and news information, based on the current
-     * recipe index.
+     * Updates the UI to display the cookbooks found for the searched dish, if any.
+     *
+     * @param tab The tab to update.
      */
-    public void updateButtons() {
-        if (recipeResponse.isPresent()) {
-            RecipeAPI.RecipeResponse response = recipeResponse.get();
-            hits = response.getHits();
-            updateRecipe();
+    public void updateCookbooks(SearchTab tab) {
+        tab.cookbookPane.getChildren().clear();
 
-            List<String> cuisines = hits.get(currentIndex)
-                .getRecipe().getCuisineType();
-            newsResponse = newsSourceApi.searchNews(cuisines);
+        if (tab.cookbookResponse.isPresent()) {
+            OpenLibrarySearchApi.OpenLibraryDoc[] docs = tab.cookbookResponse.get().getDocs();
 
-            if (newsResponse.isPresent()) {
-                updateNews();
+            if (docs.length > 0) {
+                VBox newInfo = createCookbookInfoBox(docs);
+                tab.cookbookPane.getChildren().add(newInfo);
             } // if
         } // if
-    } // updateButtons
+    } // updateCookbooks
 
     /**
-     * Creates a VBox containing information about a recipe and then styles the information.
-     * Turns the ingredients list into a single string variable with no repeated ingredients and
-     * ensures no more than 6 items are shown.
+     * Updates the UI components, including recipe and news information, based on the current
+     * recipe index. The view of the recipe, and of the one after it, is prepared in the
+     * tab's lane first; the recipe is then shown while the news for its cuisine loads in
+     * the background.
      *
-     * @param title The title of the recipe.
-     * @param url The url link of the recipe.
-     * @param yield The yield of the given recipe.
-     * @param calories The calories for the given recipe.
-     * @param ingredientsList The list of ingredients of the recipe.
-     * @return A VBox containing all the given information in string format.
+     * @param tab The tab to update.
      */
-    public VBox createRecipeInfoBox(
-        String title,
-        String url,
-        double yield,
-        double calories,
-        List<RecipeAPI.RecipeResponse.Hit.Recipe.Ingredient> ingredientsList) {
-
-        String message = "";
-        String ingredients = "";
-        Set<String> unique = new HashSet<>();
-        if (ingredientsList != null) {
-            if (ingredientsList.size() > 6) {
-                List<RecipeAPI.RecipeResponse.Hit.Recipe.Ingredient> maxIngredients =
-                    ingredientsList.subList(0, 7);
-                ingredientsList = maxIngredients;
-                message = "* Recuded Ingredients List. See full website.";
-            }
-            for (RecipeAPI.RecipeResponse.Hit.Recipe.Ingredient ingredient : ingredientsList) {
-                String text = ingredient.getText();
-                if (unique.add(text)) {
-                    ingredients += "* " + text + "\n";
+    public void updateButtons(SearchTab tab) {
+        if (tab.views.isEmpty()) {
+            return;
+        } // if
+        int id = tab.searchId;
+        int index = tab.currentIndex;
+        List<RecipeView> views = tab.views;
+        tab.lane.execute(() -> {
+            prepare(views, index);
+            Platform.runLater(() -> {
+                if (id == tab.searchId && index == tab.currentIndex && views == tab.views) {
+                    showRecipe(tab, index);
                 } // if
-            } // for
-            ingredients += message;
+            });
+        });
+    } // updateButtons
+
+    /**
+     * Shows a recipe whose view has already been prepared, and starts loading the news for
+     * its cuisine.
+     *
+     * @param tab The tab to update.
+     * @param index The index of the recipe.
+     */
+    private void showRecipe(SearchTab tab, int index) {
+        updateRecipe(tab);
+        showPlaceholder(tab.newsPane, "Loading news...");
+
+        String cuisine = tab.views.get(index).getCuisine();
+        if (cuisine == null) {
+            showPlaceholder(tab.newsPane, "No related news arrived in time.");
+            return;
         } // if
 
-        int newYield = (int) yield;
-        int newCalories = (int) calories;
+        int id = tab.searchId;
+        aggregator.searchNews(cuisine).thenAccept(news -> Platform.runLater(() -> {
+            if (id == tab.searchId && index == tab.currentIndex) {
+                showNews(tab, news);
+            } // if
+        }));
+    } // showRecipe
 
-        Label header = new Label(title);
+    /**
+     * Replaces the contents of a result panel with a short message.
+     *
+     * @param pane The panel to fill.
+     * @param message The message to show.
+     */
+    private void showPlaceholder(StackPane pane, String message) {
+        Label placeholder = new Label(message);
+        placeholder.setStyle("-fx-font-size: 14;" + "-fx-font-style: italic;");
+        placeholder.setPadding(new Insets(8));
+        pane.getChildren().setAll(placeholder);
+    } // showPlaceholder
+
+    /**
+     * Creates a VBox containing information about a recipe and then styles the information.
+     * The text has already been prepared off the JavaFX Application Thread, so this only
+     * binds it to labels.
+     *
+     * @param view The prepared view of the recipe.
+     * @return A VBox containing all the given information in string format.
+     */
+    public VBox createRecipeInfoBox(RecipeView view) {
+        Label header = new Label(view.getTitle());
         Label information = new Label("For full instructions, visit the website:");
-        Label link = new Label(url);
-        Label amount = new Label("\nYield: " + String.valueOf(newYield) +
-            "\tCalories: " + String.valueOf(newCalories));
-        Label items = new Label(ingredients);
+        Label link = new Label(view.getUrl());
+        Label amount = new Label(view.getAmount());
+        Label items = new Label(view.getIngredients());
 
         header.setStyle("-fx-font-size: 20;" + "-fx-font-weight: bold;");
         items.setStyle("-fx-font-size: 14;");
@@ -448,13 +995,36 @@ public class ApiApp extends Application {
     } // createNewsInfoBox
 
     /**
-     * Executes a thread with the given Runnable task.
+     * Creates a VBox listing cookbooks related to the dish and then styles the information.
      *
-     * @param task A runnable task to be executed.
+     * @param docs The cookbooks found by the Open Library Search API.
+     * @return A VBox containing the title, author and year of each cookbook.
      */
-    public void run(Runnable task) {
-        Thread thread = new Thread(task);
-        thread.setDaemon(true);
-        thread.start();
-    } // run
+    public VBox createCookbookInfoBox(OpenLibrarySearchApi.OpenLibraryDoc[] docs) {
+        StringBuilder books = new StringBuilder();
+        for (OpenLibrarySearchApi.OpenLibraryDoc doc : docs) {
+            books.append("* ").append(doc.getTitle());
+            if (doc.getAuthor() != null) {
+                books.append(" by ").append(doc.getAuthor());
+            } // if
+            if (doc.getFirstPublishYear() > 0) {
+                books.append(" (").append(doc.getFirstPublishYear()).append(")");
+            } // if
+            books.append("\n");
+        } // for
+
+        Label header = new Label("Related Cookbooks");
+        Label items = new Label(books.toString());
+
+        header.setStyle("-fx-font-size: 20;" + "-fx-font-weight: bold;");
+        items.setStyle("-fx-font-size: 14;");
+        items.setWrapText(true);
+
+        VBox newInfo = new VBox();
+        newInfo.getChildren().addAll(header, items);
+        newInfo.setAlignment(Pos.TOP_CENTER);
+        newInfo.setPadding(new Insets(8));
+
+        return newInfo;
+    } // createCookbookInfoBox
 } // ApiApp
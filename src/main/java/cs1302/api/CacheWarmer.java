@@ -0,0 +1,178 @@
+package cs1302.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the most popular dishes cached so that searching for them is a cache hit even when
+ * the rate limits are busy. Every search adds to the popularity of its dish, which decays
+ * over time. Whenever the user has not searched for a while, the hottest dishes and the
+ * news for their cuisines are fetched again in the background with requests the rate limits
+ * can spare; a dish whose response is still fresh costs nothing. Warming always leaves part
+ * of every window for the user's own searches and stops as soon as the user searches again.
+ */
+public class CacheWarmer {
+
+    /** How often warming is considered. */
+    private static final long PERIOD_SECONDS = 20;
+    /** How long the user must not have searched before warming starts. */
+    private static final long IDLE_SECONDS = 30;
+    /** The most dishes warmed at once, hottest first. */
+    private static final int HOTTEST_DISHES = 5;
+    /** The share of every rate limit window that warming never uses. */
+    private static final double HEADROOM = 0.5;
+    /** How much of its popularity a dish keeps each period, about half every ten minutes. */
+    private static final double DECAY = 0.977;
+    /** The popularity below which a dish is forgotten. */
+    private static final double FORGOTTEN = 0.05;
+
+    private final RecipeAPI recipes;
+    private final NewsSourceAPI news;
+    private final TaskRuntime tasks;
+    private final Map<String, Double> popularity = new HashMap<>();
+    private final Map<String, String> spellings = new HashMap<>();
+    private final AtomicBoolean warming = new AtomicBoolean();
+    private volatile long lastSearch = System.nanoTime();
+
+    /**
+     * Constructs a {@code CacheWarmer}.
+     *
+     * @param recipes The recipe source to warm.
+     * @param news The news source to warm with the cuisines of the recipes.
+     * @param tasks The runtime that runs the warming.
+     */
+    public CacheWarmer(RecipeAPI recipes, NewsSourceAPI news, TaskRuntime tasks) {
+        this.recipes = recipes;
+        this.news = news;
+        this.tasks = tasks;
+    } // CacheWarmer
+
+    /**
+     * Starts considering warming every {@value #PERIOD_SECONDS} seconds.
+     */
+    public void start() {
+        tasks.repeat("cache-warmer", PERIOD_SECONDS, TimeUnit.SECONDS,
+            tasks.lane("cache-warmer"), this::warm);
+    } // start
+
+    /**
+     * Records that the user has started a search, pausing warming until the user is idle
+     * again.
+     */
+    public void recordActivity() {
+        lastSearch = System.nanoTime();
+    } // recordActivity
+
+    /**
+     * Records that the user has found recipes for a dish, adding to its popularity. Every
+     * spelling of a dish adds to the popularity of its canonical key, and the dish is
+     * warmed under the spelling searched last.
+     *
+     * @param dish The dish that was searched.
+     */
+    public void recordSearch(String dish) {
+        recordActivity();
+        String key = QueryCanonicalizer.canonicalize(dish);
+        if (key.isEmpty()) {
+            return;
+        } // if
+        synchronized (popularity) {
+            popularity.merge(key, 1.0, Double::sum);
+            spellings.put(key, QueryCanonicalizer.normalize(dish));
+        } // synchronized
+    } // recordSearch
+
+    /**
+     * Gets the hottest dishes, most popular first.
+     *
+     * @param n The most dishes to return.
+     * @return The hottest dishes, each as it was last searched.
+     */
+    public List<String> hottest(int n) {
+        List<Map.Entry<String, Double>> ranked;
+        List<String> dishes;
+        synchronized (popularity) {
+            ranked = new ArrayList<>(popularity.entrySet());
+            ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+            dishes = new ArrayList<>(Math.min(n, ranked.size()));
+            for (int i = 0; i < n && i < ranked.size(); i++) {
+                dishes.add(spellings.get(ranked.get(i).getKey()));
+            } // for
+        } // synchronized
+        return dishes;
+    } // hottest
+
+    /**
+     * Decays the popularity of every dish and, if the user is idle and no earlier warming
+     * is still running, warms the hottest dishes one after another.
+     */
+    private void warm() {
+        decay();
+        if (!isIdle() || !warming.compareAndSet(false, true)) {
+            return;
+        } // if
+        warmNext(hottest(HOTTEST_DISHES).iterator())
+            .whenComplete((ignored, e) -> warming.set(false));
+    } // warm
+
+    /**
+     * Warms the next dish, and then the ones after it, while the user is idle and the
+     * recipe source can spare requests.
+     *
+     * @param dishes The dishes left to warm.
+     * @return A future that completes once warming has stopped.
+     */
+    private CompletableFuture<Void> warmNext(Iterator<String> dishes) {
+        if (!dishes.hasNext() || !isIdle()
+            || recipes.getRemainingRequests() <= reserve(recipes)) {
+            return CompletableFuture.completedFuture(null);
+        } // if
+        String dish = dishes.next();
+        return recipes.prefetch(dish, reserve(recipes))
+            .thenCompose(response -> response
+                .map(RecipeAPI.RecipeResponse::getHits)
+                .filter(hits -> !hits.isEmpty())
+                .flatMap(hits -> SearchAggregator.cuisineOf(hits.get(0)))
+                .map(cuisine -> news.prefetch(cuisine, reserve(news)))
+                .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())))
+            .thenCompose(ignored -> warmNext(dishes));
+    } // warmNext
+
+    /**
+     * Gets the number of requests of every window that warming leaves to a source's user.
+     *
+     * @param source The source being warmed.
+     * @return The number of requests reserved.
+     */
+    private static int reserve(HttpResultSource<?> source) {
+        return (int) Math.ceil(source.getRequestLimit() * HEADROOM);
+    } // reserve
+
+    /**
+     * Checks whether the user has not searched for {@value #IDLE_SECONDS} seconds.
+     *
+     * @return {@code true} if the user is idle.
+     */
+    private boolean isIdle() {
+        return System.nanoTime() - lastSearch >= TimeUnit.SECONDS.toNanos(IDLE_SECONDS);
+    } // isIdle
+
+    /**
+     * Decays the popularity of every dish by one period, forgetting dishes that have not
+     * been searched for a long time.
+     */
+    private void decay() {
+        synchronized (popularity) {
+            popularity.replaceAll((dish, score) -> score * DECAY);
+            popularity.values().removeIf(score -> score < FORGOTTEN);
+            spellings.keySet().retainAll(popularity.keySet());
+        } // synchronized
+    } // decay
+} // CacheWarmer
@@ -0,0 +1,180 @@
+package cs1302.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A response body kept deflate-compressed in memory. The body is split into blocks that
+ * are compressed on their own, so a part of it can be read without inflating the rest.
+ * A source marks the parts of its bodies that can be decoded on their own, such as the
+ * hits of a recipe search, as segments; every segment is a block of its own, and the
+ * bytes before, between and after the segments are kept in blocks of their own too. A
+ * source may leave parts it will never decode, such as duplicate hits, out of its
+ * segments.
+ */
+public final class CompressedBody {
+
+    private final byte[][] blocks;
+    private final int[] lengths;
+    private final int size;
+    private final int compressedSize;
+
+    /**
+     * Constructs a {@code CompressedBody}.
+     *
+     * @param blocks The compressed blocks, in order.
+     * @param lengths The uncompressed length of each block.
+     * @param size The uncompressed length of the body.
+     * @param compressedSize The compressed length of the body.
+     */
+    private CompressedBody(byte[][] blocks, int[] lengths, int size, int compressedSize) {
+        this.blocks = blocks;
+        this.lengths = lengths;
+        this.size = size;
+        this.compressedSize = compressedSize;
+    } // CompressedBody
+
+    /**
+     * Compresses a body with the given segments. Segment {@code i} runs from
+     * {@code bounds[2 * i]} up to {@code bounds[2 * i + 1]}; the segments are in order and
+     * do not overlap. Bytes outside every segment are kept too, so the whole body can
+     * still be read.
+     *
+     * @param body The UTF-8 bytes of the body.
+     * @param bounds The start and end offsets of every segment, in ascending order.
+     * @return The compressed body.
+     */
+    public static CompressedBody of(byte[] body, int[] bounds) {
+        int[] cuts = new int[bounds.length / 2 * 2 + 2];
+        System.arraycopy(bounds, 0, cuts, 1, cuts.length - 2);
+        cuts[cuts.length - 1] = body.length;
+
+        byte[][] blocks = new byte[cuts.length - 1][];
+        int[] lengths = new int[blocks.length];
+        int compressedSize = 0;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] buffer = new byte[8192];
+        try {
+            for (int i = 0; i < blocks.length; i++) {
+                lengths[i] = cuts[i + 1] - cuts[i];
+                ByteArrayOutputStream out = new ByteArrayOutputStream(lengths[i] / 4 + 16);
+                deflater.reset();
+                deflater.setInput(body, cuts[i], lengths[i]);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                } // while
+                blocks[i] = out.toByteArray();
+                compressedSize += blocks[i].length;
+            } // for
+        } finally {
+            deflater.end();
+        } // try
+        return new CompressedBody(blocks, lengths, body.length, compressedSize);
+    } // of
+
+    /**
+     * Gets the number of segments the body was split into.
+     * @return The number of segments, or {@code 0} if the body has none.
+     */
+    public int getSegmentCount() {
+        return blocks.length / 2;
+    } // getSegmentCount
+
+    /**
+     * Inflates one segment of the body.
+     *
+     * @param index The index of the segment.
+     * @return The UTF-8 bytes of the segment.
+     * @throws IndexOutOfBoundsException if there is no such segment.
+     */
+    public byte[] segment(int index) {
+        if (index < 0 || index >= getSegmentCount()) {
+            throw new IndexOutOfBoundsException("segment " + index);
+        } // if
+        return inflate(2 * index + 1);
+    } // segment
+
+    /**
+     * Opens a reader over the whole body, inflating one block at a time as it is read.
+     * Each block's inflater is only created once the block is reached and is released
+     * once it has been read; the reader must be closed to release the inflater of a block
+     * that was not read to its end.
+     *
+     * @return A reader of the body's text.
+     */
+    public Reader reader() {
+        Enumeration<InputStream> streams = new Enumeration<>() {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < blocks.length;
+            } // hasMoreElements
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                } // if
+                return new InflaterInputStream(new ByteArrayInputStream(blocks[next++]));
+            } // nextElement
+        };
+        return new InputStreamReader(new SequenceInputStream(streams), StandardCharsets.UTF_8);
+    } // reader
+
+    /**
+     * Gets the uncompressed length of the body.
+     * @return The number of bytes of the body.
+     */
+    public int size() {
+        return size;
+    } // size
+
+    /**
+     * Gets the compressed length of the body.
+     * @return The number of bytes kept in memory.
+     */
+    public int compressedSize() {
+        return compressedSize;
+    } // compressedSize
+
+    /**
+     * Inflates one block of the body.
+     *
+     * @param index The index of the block.
+     * @return The uncompressed bytes of the block.
+     */
+    private byte[] inflate(int index) {
+        byte[] out = new byte[lengths[index]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blocks[index]);
+            int read = 0;
+            while (read < out.length) {
+                int n = inflater.inflate(out, read, out.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput()
+                    || inflater.needsDictionary())) {
+                    throw new IllegalStateException("truncated cached block");
+                } // if
+                read += n;
+            } // while
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("corrupt cached block", e);
+        } finally {
+            inflater.end();
+        } // try
+    } // inflate
+} // CompressedBody
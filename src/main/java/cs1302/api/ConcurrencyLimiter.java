@@ -0,0 +1,211 @@
+package cs1302.api;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits how many requests to an upstream are in flight at once, adapting the limit to how
+ * the upstream actually behaves (additive increase, multiplicative decrease). While
+ * responses come back about as fast as usual, the limit grows by one request for every
+ * full window of successful requests. When the round-trip time rises well above its
+ * long-term average the upstream is queuing, so the limit shrinks a little; when the
+ * upstream throttles with {@code 429 Too Many Requests} or {@code 503 Service Unavailable}
+ * the limit is halved, at most once per round trip, so a burst of refusals from one window
+ * counts as a single signal. Requests over the limit wait in line instead of failing.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * What a finished request says about the upstream.
+     */
+    public enum Signal {
+        /** The upstream answered normally; its round-trip time is measured. */
+        SUCCESS,
+        /** The upstream throttled or was overloaded. */
+        DROPPED,
+        /** The request failed for another reason and says nothing about load. */
+        IGNORED;
+
+        /**
+         * Tells what a response status says about the upstream's load.
+         *
+         * @param statusCode The HTTP status code of a response.
+         * @return {@code DROPPED} if the upstream throttled or was overloaded,
+         *     {@code SUCCESS} if it answered normally, or {@code IGNORED} otherwise.
+         */
+        public static Signal of(int statusCode) {
+            if (statusCode == 429 || statusCode == 503) {
+                return DROPPED;
+            } else if (statusCode == 200 || statusCode == 304) {
+                return SUCCESS;
+            } // if
+            return IGNORED;
+        } // of
+    } // Signal
+
+    /**
+     * The right to send one request. Releasing it lets the next request in line go.
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Constructs a {@code Permit}.
+         */
+        private Permit() {
+        } // Permit
+
+        /**
+         * Releases the permit, adapting the limit to what the request said about the
+         * upstream. Releasing a permit again does nothing.
+         *
+         * @param signal What the request said about the upstream.
+         * @param rttNanos The time from sending the request to its response headers, in
+         *     nanoseconds; only used on success.
+         */
+        public void release(Signal signal, long rttNanos) {
+            if (released.compareAndSet(false, true)) {
+                ConcurrencyLimiter.this.release(signal, rttNanos);
+            } // if
+        } // release
+    } // Permit
+
+    /** The fewest requests ever allowed in flight at once. */
+    private static final int MIN_LIMIT = 1;
+    /** How far above its long-term average the round-trip time may rise while healthy. */
+    private static final double RTT_TOLERANCE = 2.0;
+    /** The weight of each new sample in the long-term average round-trip time. */
+    private static final double RTT_SMOOTHING = 0.05;
+    /** The share of the limit kept when the round-trip time has risen. */
+    private static final double RTT_BACKOFF = 0.9;
+    /** The share of the limit kept when the upstream throttles. */
+    private static final double DROP_BACKOFF = 0.5;
+    /** The shortest time between two decreases for throttling. */
+    private static final long MIN_DROP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int maxLimit;
+    private final Deque<CompletableFuture<Permit>> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double averageRttNanos;
+    private long lastDrop;
+
+    /**
+     * Constructs a {@code ConcurrencyLimiter}.
+     *
+     * @param initialLimit The number of requests allowed in flight at first.
+     * @param maxLimit The most requests ever allowed in flight at once.
+     */
+    public ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(MIN_LIMIT, Math.min(initialLimit, maxLimit));
+        this.lastDrop = System.nanoTime() - MIN_DROP_INTERVAL_NANOS;
+    } // ConcurrencyLimiter
+
+    /**
+     * Gets a permit to send one request, waiting in line while the limit is reached. A
+     * caller that stops waiting may cancel the future; the permit it would have been
+     * given then goes to the next request in line.
+     *
+     * @return A future that completes with the permit once the request may be sent.
+     */
+    public synchronized CompletableFuture<Permit> acquire() {
+        if (waiting.isEmpty() && inFlight < (int) limit) {
+            inFlight++;
+            return CompletableFuture.completedFuture(new Permit());
+        } // if
+        CompletableFuture<Permit> turn = new CompletableFuture<>();
+        waiting.addLast(turn);
+        return turn;
+    } // acquire
+
+    /**
+     * Ends a request, adapts the limit and lets as many waiting requests go as the new
+     * limit allows.
+     *
+     * @param signal What the request said about the upstream.
+     * @param rttNanos The round-trip time of the request in nanoseconds.
+     */
+    private void release(Signal signal, long rttNanos) {
+        Deque<CompletableFuture<Permit>> ready = new ArrayDeque<>();
+        synchronized (this) {
+            inFlight--;
+            adapt(signal, rttNanos);
+            while (!waiting.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                ready.addLast(waiting.pollFirst());
+            } // while
+        } // synchronized
+        // complete outside the lock, since completing runs the waiters' requests
+        for (CompletableFuture<Permit> turn : ready) {
+            Permit permit = new Permit();
+            if (!turn.complete(permit)) {
+                permit.release(Signal.IGNORED, 0); // the waiter gave up
+            } // if
+        } // for
+    } // release
+
+    /**
+     * Adapts the limit to what a finished request said about the upstream.
+     *
+     * @param signal What the request said about the upstream.
+     * @param rttNanos The round-trip time of the request in nanoseconds.
+     */
+    private void adapt(Signal signal, long rttNanos) {
+        if (signal == Signal.DROPPED) {
+            long now = System.nanoTime();
+            if (now - lastDrop >= Math.max(MIN_DROP_INTERVAL_NANOS, (long) averageRttNanos)) {
+                lastDrop = now;
+                limit = Math.max(MIN_LIMIT, limit * DROP_BACKOFF);
+            } // if
+        } else if (signal == Signal.SUCCESS) {
+            if (averageRttNanos == 0) {
+                averageRttNanos = rttNanos;
+            } // if
+            if (rttNanos > averageRttNanos * RTT_TOLERANCE) {
+                limit = Math.max(MIN_LIMIT, limit * RTT_BACKOFF);
+            } else if (inFlight + 1 >= limit / 2) {
+                // only grow while the limit is actually being used
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            } // if
+            averageRttNanos += (rttNanos - averageRttNanos) * RTT_SMOOTHING;
+        } // if
+    } // adapt
+
+    /**
+     * Gets the number of requests currently allowed in flight at once.
+     * @return The current limit.
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    } // getLimit
+
+    /**
+     * Gets the number of requests in flight.
+     * @return The number of requests in flight.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    } // getInFlight
+
+    /**
+     * Gets the number of requests waiting for a permit.
+     * @return The number of waiting requests.
+     */
+    public synchronized int getWaiting() {
+        return waiting.size();
+    } // getWaiting
+
+    /**
+     * Returns a string of the current limit, requests in flight and requests waiting.
+     * @return The state of the limiter.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("limit=%d inFlight=%d waiting=%d",
+            (int) limit, inFlight, waiting.size());
+    } // toString
+} // ConcurrencyLimiter
@@ -0,0 +1,250 @@
+package cs1302.api;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of worker threads shared fairly between independent clients, such as
+ * the search tabs of the app. Each client submits its tasks to its own {@link Lane}. The
+ * tasks of one lane run one at a time and in order, so a client's state is only ever
+ * touched by one task at a time, while the workers take turns between the lanes that have
+ * work, one task each, so a busy lane cannot starve the others. A worker carries the name
+ * of the lane whose task it is running.
+ */
+public class FairExecutor {
+
+    /**
+     * The tasks of one client, run one at a time in the order they were submitted.
+     */
+    public final class Lane implements Executor {
+        private final String name;
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+        private boolean closed;
+
+        /**
+         * Constructs a {@code Lane}.
+         *
+         * @param name The name of the lane.
+         */
+        private Lane(String name) {
+            this.name = name;
+        } // Lane
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>
+         * Tasks submitted after the lane is closed are dropped.
+         *
+         * @throws RejectedExecutionException if the lane already has the most tasks a lane
+         *     may queue.
+         */
+        @Override
+        public void execute(Runnable task) {
+            enqueue(task, true);
+        } // execute
+
+        /**
+         * Submits a task if the lane can take it, doing nothing otherwise. Meant for work
+         * that may be dropped, such as from a callback that must not fail once the lane
+         * is closed or full.
+         *
+         * @param task The task to run.
+         * @return {@code true} if the task was queued.
+         */
+        public boolean offer(Runnable task) {
+            return enqueue(task, false);
+        } // offer
+
+        /**
+         * Queues a task unless the lane is closed or already has the most tasks a lane may
+         * queue.
+         *
+         * @param task The task to run.
+         * @param reject Whether a full lane throws rather than dropping the task.
+         * @return {@code true} if the task was queued.
+         * @throws RejectedExecutionException if the lane is full and {@code reject} is set.
+         */
+        private boolean enqueue(Runnable task, boolean reject) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return false;
+                } // if
+                if (tasks.size() >= maxQueuedPerLane) {
+                    if (reject) {
+                        throw new RejectedExecutionException(
+                            name + " has too many queued tasks");
+                    } // if
+                    return false;
+                } // if
+                tasks.addLast(task);
+                queued++;
+                if (!running && tasks.size() == 1) {
+                    ready.addLast(this);
+                    workAvailable.signal();
+                } // if
+                return true;
+            } finally {
+                lock.unlock();
+            } // try
+        } // enqueue
+
+        /**
+         * Drops every task still queued in the lane, keeping the lane open for new tasks.
+         * A task already running is left to finish.
+         *
+         * @return The number of tasks dropped.
+         */
+        public int clear() {
+            lock.lock();
+            try {
+                int dropped = tasks.size();
+                queued -= dropped;
+                tasks.clear();
+                ready.remove(this);
+                return dropped;
+            } finally {
+                lock.unlock();
+            } // try
+        } // clear
+
+        /**
+         * Closes the lane, dropping every task still queued. A task already running is
+         * left to finish.
+         *
+         * @return The number of tasks dropped.
+         */
+        public int close() {
+            lock.lock();
+            try {
+                closed = true;
+                int dropped = tasks.size();
+                queued -= dropped;
+                tasks.clear();
+                ready.remove(this);
+                return dropped;
+            } finally {
+                lock.unlock();
+            } // try
+        } // close
+
+        /**
+         * Gets the name of the lane.
+         * @return The name of the lane.
+         */
+        public String getName() {
+            return name;
+        } // getName
+    } // Lane
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Deque<Lane> ready = new ArrayDeque<>();
+    private final int maxQueuedPerLane;
+    private int queued;
+    private int active;
+
+    /**
+     * Constructs a {@code FairExecutor} and starts its workers.
+     *
+     * @param name The prefix of the workers' thread names.
+     * @param threads The number of worker threads.
+     * @param maxQueuedPerLane The most tasks a single lane may have waiting.
+     */
+    public FairExecutor(String name, int threads, int maxQueuedPerLane) {
+        this.maxQueuedPerLane = maxQueuedPerLane;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        } // for
+    } // FairExecutor
+
+    /**
+     * Opens a new lane.
+     *
+     * @param name The name of the lane.
+     * @return The lane.
+     */
+    public Lane lane(String name) {
+        return new Lane(name);
+    } // lane
+
+    /**
+     * Gets the number of tasks running right now.
+     * @return The number of active tasks.
+     */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        } // try
+    } // getActiveCount
+
+    /**
+     * Gets the number of tasks waiting in every lane.
+     * @return The number of queued tasks.
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        } // try
+    } // getQueuedCount
+
+    /**
+     * Runs tasks until the application exits, taking one task from the next ready lane in
+     * turn and putting the lane back at the end of the line if it has more. Anything a
+     * task throws is reported to the worker's uncaught exception handler, and the worker
+     * goes on to the next task, so the pool never shrinks.
+     */
+    private void work() {
+        while (true) {
+            Lane lane;
+            Runnable task;
+            lock.lock();
+            try {
+                while (ready.isEmpty()) {
+                    workAvailable.awaitUninterruptibly();
+                } // while
+                lane = ready.pollFirst();
+                task = lane.tasks.pollFirst();
+                queued--;
+                lane.running = true;
+                active++;
+            } finally {
+                lock.unlock();
+            } // try
+
+            try {
+                TaskRuntime.named(lane.name, task).run();
+            } catch (Throwable e) {
+                // even an Error only fails its task; the worker stays to serve the lanes
+                Thread worker = Thread.currentThread();
+                worker.getUncaughtExceptionHandler().uncaughtException(worker, e);
+            } finally {
+                lock.lock();
+                try {
+                    active--;
+                    lane.running = false;
+                    if (!lane.closed && !lane.tasks.isEmpty()) {
+                        ready.addLast(lane);
+                        workAvailable.signal();
+                    } // if
+                } finally {
+                    lock.unlock();
+                } // try
+            } // try
+        } // while
+    } // work
+} // FairExecutor
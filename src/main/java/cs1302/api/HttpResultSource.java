@@ -0,0 +1,860 @@
+package cs1302.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+
+/**
+ * A {@link ResultSource} backed by a JSON HTTP API. Subclasses only describe how a query
+ * becomes a request; this class supplies the machinery every source shares: a single
+ * HTTP client and {@code Gson}, the configuration file, a {@link ResponseCache},
+ * a {@link RateLimiter}, an adaptive {@link ConcurrencyLimiter}, {@link SourceMetrics},
+ * a {@link RequestTrace} of every fetch, coalescing of identical fetches that are
+ * already in flight, and error alerts. Every query is keyed by its canonical form from
+ * {@link #canonicalize(String)}; the cache, coalescing and trace see only that key, so
+ * every spelling of one query shares a single request against the rate limit, while the
+ * request itself searches for the query as given, normalized by {@link #normalize(String)}.
+ * Response
+ * bodies are decoded straight from the network stream as they download rather than after
+ * the last byte has arrived.
+ *
+ * @param <T> The type of the response returned by the source.
+ */
+public abstract class HttpResultSource<T> implements ResultSource<T> {
+
+    /**
+     * Decodes a response from a stream of JSON text.
+     *
+     * @param <T> The type of the decoded response.
+     */
+    @FunctionalInterface
+    protected interface BodyDecoder<T> {
+
+        /**
+         * Decodes a response, reading as little or as much of the stream as needed.
+         *
+         * @param reader The JSON text of the response body.
+         * @return The decoded response, or {@code null} if the body is empty.
+         * @throws IOException if the stream could not be read.
+         */
+        T decode(Reader reader) throws IOException;
+    } // BodyDecoder
+
+    /**
+     * The pending result of a fetch in flight, shared by every fetch coalesced with it,
+     * together with whether its upstream request was refused by the rate limit.
+     *
+     * @param <T> The type of the response.
+     */
+    private static final class Pending<T> {
+
+        private final CompletableFuture<Optional<T>> result = new CompletableFuture<>();
+        private volatile boolean rateLimited;
+
+        /**
+         * Gets the result for one of the fetches sharing it, telling that fetch's listener
+         * if the request was refused by the rate limit.
+         *
+         * @param listener The listener of the fetch, or {@code null}.
+         * @return A future of an Optional containing the response.
+         */
+        CompletableFuture<Optional<T>> resultFor(FetchListener<T> listener) {
+            if (listener == null) {
+                return result;
+            } // if
+            return result.thenApply(response -> {
+                if (rateLimited) {
+                    listener.onRateLimited();
+                } // if
+                return response;
+            });
+        } // resultFor
+    } // Pending
+
+    /**
+     * An input stream that copies every byte it reads into an output stream, so a body
+     * can be decoded while it downloads and still be cached once it is complete.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        /**
+         * Constructs a {@code TeeInputStream}.
+         *
+         * @param in The stream to read from.
+         * @param copy The stream every read byte is copied to.
+         */
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        } // TeeInputStream
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                copy.write(b);
+            } // if
+            return b;
+        } // read
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                copy.write(buffer, offset, n);
+            } // if
+            return n;
+        } // read
+    } // TeeInputStream
+
+    /** How long setting up a connection to an upstream may take. */
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    /**
+     * How long a request may take, headers and body, before it is abandoned: never longer
+     * than a whole search is waited on.
+     */
+    private static final Duration REQUEST_TIMEOUT =
+        Duration.ofMillis(SearchAggregator.SEARCH_BUDGET_MILLIS);
+
+    /** HTTP client shared by every source. */
+    protected static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .connectTimeout(CONNECT_TIMEOUT)
+        .build();
+
+    /** Google {@code Gson} object shared by every source. */
+    protected static final Gson GSON = new GsonBuilder()
+        .create();
+
+    /** The most threads decoding response bodies at once, across every source. */
+    private static final int DECODER_THREADS = 16;
+    /** How long an idle decoder thread is kept before it exits. */
+    private static final long DECODER_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Threads that decode response bodies while they download. Decoding blocks on the
+     * network, so it runs on a pool of its own rather than on the app's task runtime,
+     * where it would hold up the tabs' lanes; bodies beyond the pool's size wait in its
+     * queue.
+     */
+    private static final ExecutorService DECODERS = newDecoders();
+
+    /** How long a warm-up request may take before it is abandoned. */
+    private static final Duration WARM_UP_TIMEOUT = Duration.ofSeconds(10);
+
+    /** The most responses of one source kept in its cache. */
+    private static final int CACHE_ENTRIES = 256;
+
+    /**
+     * How many times its time to live a cached response may still be served once it has
+     * expired, while revalidations keep being refused or failing, before it is a miss.
+     */
+    private static final int MAX_STALE_TTLS = 6;
+    /** How many requests to one upstream may be in flight at first. */
+    private static final int INITIAL_CONCURRENCY = 4;
+    /** The most requests to one upstream ever in flight at once. */
+    private static final int MAX_CONCURRENCY = 32;
+
+    private static final String CONFIG_PATH = "resources/config.properties";
+    private static final Properties CONFIG = loadConfig();
+
+    private final String name;
+    private final Class<T> responseType;
+    private final ResponseCache cache;
+    private final RateLimiter rateLimiter;
+    private final ConcurrencyLimiter concurrency =
+        new ConcurrencyLimiter(INITIAL_CONCURRENCY, MAX_CONCURRENCY);
+    private final int spareReserve;
+    private final SourceMetrics metrics = new SourceMetrics();
+    private final Map<String, Pending<T>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> spellings = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+            return size() > CACHE_ENTRIES;
+        } // removeEldestEntry
+    };
+    private volatile boolean rateLimited;
+
+    /**
+     * Constructs an {@code HttpResultSource}.
+     *
+     * @param name The name the source is registered under.
+     * @param responseType The type the JSON response is decoded into.
+     * @param ttl How long a cached response is served without revalidation. Once expired,
+     *     it is served stale for at most {@value #MAX_STALE_TTLS} times as long.
+     * @param rateLimiter The rate limit of the upstream.
+     * @param spareReserve The number of requests background revalidations must leave
+     *     available for the user's own searches.
+     */
+    protected HttpResultSource(
+        String name,
+        Class<T> responseType,
+        Duration ttl,
+        RateLimiter rateLimiter,
+        int spareReserve) {
+        this.name = name;
+        this.responseType = responseType;
+        this.cache = new ResponseCache(name, HTTP_CLIENT, concurrency, ttl,
+            ttl.multipliedBy(MAX_STALE_TTLS), CACHE_ENTRIES, body -> segment(body, null));
+        this.rateLimiter = rateLimiter;
+        this.spareReserve = spareReserve;
+    } // HttpResultSource
+
+    /**
+     * Builds the upstream request for the given query.
+     *
+     * @param query The query to fetch results for.
+     * @return The request to send.
+     */
+    protected abstract HttpRequest buildRequest(String query);
+
+    @Override
+    public String getName() {
+        return name;
+    } // getName
+
+    @Override
+    public Class<T> getResponseType() {
+        return responseType;
+    } // getResponseType
+
+    @Override
+    public boolean isRateLimited() {
+        return rateLimited;
+    } // isRateLimited
+
+    @Override
+    public SourceMetrics getMetrics() {
+        return metrics;
+    } // getMetrics
+
+    /**
+     * Gets the number of upstream requests left in the current rate limit window.
+     * @return The number of requests left.
+     */
+    public int getRemainingRequests() {
+        return rateLimiter.getLimit() - rateLimiter.getUsed();
+    } // getRemainingRequests
+
+    /**
+     * Gets the limiter adapting how many requests to the upstream may be in flight at once.
+     * @return The concurrency limiter.
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrency;
+    } // getConcurrencyLimiter
+
+    /**
+     * Gets the maximum number of upstream requests in one rate limit window.
+     * @return The request limit.
+     */
+    public int getRequestLimit() {
+        return rateLimiter.getLimit();
+    } // getRequestLimit
+
+    /**
+     * Gets the rate limiter of this source.
+     * @return The rate limiter.
+     */
+    protected RateLimiter getRateLimiter() {
+        return rateLimiter;
+    } // getRateLimiter
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * A fetch for a query whose canonical form is already in flight shares the pending
+     * result instead of sending a second request.
+     */
+    @Override
+    public CompletableFuture<Optional<T>> fetch(String query) {
+        return fetch(query, this::decode);
+    } // fetch
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Every fetch coalesced with a refused one hears about the refusal too.
+     */
+    @Override
+    public CompletableFuture<Optional<T>> fetch(String query, FetchListener<T> listener) {
+        return fetch(query, this::decode, listener);
+    } // fetch
+
+    /**
+     * Fetches the results for the given query in the background so that they are cached
+     * for a later search. A query that is already cached is served from the cache and, if
+     * its entry is stale, revalidated. The upstream is only asked if at least
+     * {@code reserve} requests of the current window, and never fewer than this source's
+     * own reserve, are still left afterwards. A refused or failed prefetch never marks the
+     * source as rate limited and never alerts the user.
+     *
+     * @param query The query to fetch results for.
+     * @param reserve The number of requests that must remain available for the user's own
+     *     searches.
+     * @return A future of an Optional containing the response, or empty if the prefetch
+     *     was refused or failed.
+     */
+    public CompletableFuture<Optional<T>> prefetch(String query, int reserve) {
+        int headroom = Math.max(reserve, spareReserve);
+        return fetch(query, this::decode,
+            () -> rateLimiter.tryAcquireSpare(headroom), null);
+    } // prefetch
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Sends a {@code HEAD} request to the root of the upstream's host, which carries no API
+     * key and so uses no quota, leaving a connection with DNS, TCP, TLS and HTTP/2 already
+     * set up in the shared client's pool. The JSON decoding path is warmed at the same time
+     * by {@link #warmDecoder()}.
+     */
+    @Override
+    public CompletableFuture<Void> warmUp() {
+        CompletableFuture<Void> decoding = CompletableFuture
+            .runAsync(this::warmDecoder, DECODERS)
+            .exceptionally(e -> null);
+        CompletableFuture<Void> connecting;
+        try {
+            URI endpoint = buildRequest("").uri();
+            HttpRequest head = HttpRequest
+                .newBuilder(URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority()
+                    + "/"))
+                .method("HEAD", BodyPublishers.noBody())
+                .timeout(WARM_UP_TIMEOUT)
+                .build();
+            connecting = HTTP_CLIENT.sendAsync(head, BodyHandlers.discarding())
+                .handle((response, e) -> null);
+        } catch (RuntimeException e) {
+            connecting = CompletableFuture.completedFuture(null);
+        } // try
+        return CompletableFuture.allOf(decoding, connecting);
+    } // warmUp
+
+    /**
+     * Reduces a query to the key it is cached and coalesced under. By default the query is
+     * canonicalized by {@link QueryCanonicalizer#canonicalize(String)}.
+     *
+     * @param query The query as given.
+     * @return The canonical key of the query.
+     */
+    protected String canonicalize(String query) {
+        return QueryCanonicalizer.canonicalize(query);
+    } // canonicalize
+
+    /**
+     * Normalizes a query into the form its request is built from. By default only case,
+     * Unicode form and spacing are normalized by {@link QueryCanonicalizer#normalize(String)}.
+     *
+     * @param query The query as given.
+     * @return The query to build the request from.
+     */
+    protected String normalize(String query) {
+        return QueryCanonicalizer.normalize(query);
+    } // normalize
+
+    /**
+     * Decodes a whole response body. By default the body is decoded into the response type
+     * by {@code Gson}.
+     *
+     * @param reader The JSON text of the response body.
+     * @return The decoded response, or {@code null} if the body is empty.
+     * @throws IOException if the stream could not be read.
+     */
+    protected T decode(Reader reader) throws IOException {
+        return GSON.fromJson(reader, responseType);
+    } // decode
+
+    /**
+     * Finds the parts of a response body that can be decoded on their own, so that the
+     * cache keeps each of them in a block of its own. By default a body has no such parts.
+     *
+     * @param body The UTF-8 bytes of the response body.
+     * @param decoded The response decoded from the body, or {@code null} if the body was
+     *     not decoded, such as when it was refreshed by a revalidation.
+     * @return The start and end offsets of the segments, as taken by
+     *     {@link CompressedBody#of(byte[], int[])}.
+     */
+    protected int[] segment(byte[] body, T decoded) {
+        return new int[0];
+    } // segment
+
+    /**
+     * Decodes a response served from the cache. By default the whole body is inflated and
+     * given to the decoder as it is read.
+     *
+     * @param body The cached body.
+     * @param decoder Decodes the response body.
+     * @return The decoded response, or {@code null} if the body is empty.
+     * @throws IOException if the body could not be read.
+     */
+    protected T decodeCached(CompressedBody body, BodyDecoder<T> decoder) throws IOException {
+        try (Reader reader = body.reader()) {
+            return decoder.decode(reader);
+        } // try
+    } // decodeCached
+
+    /**
+     * Decodes a small sample response so that {@code Gson} has built its type adapters
+     * before the first real response arrives. By default an empty object is decoded into
+     * the response type, which builds the adapters of every type it contains.
+     */
+    protected void warmDecoder() {
+        GSON.fromJson("{}", responseType);
+    } // warmDecoder
+
+    /**
+     * Fetches the results for the given query, decoding the body with the given decoder.
+     * A fetch that joins an identical fetch already in flight gets the completed response
+     * without its decoder being called.
+     *
+     * @param query The query to fetch results for.
+     * @param decoder Decodes the response body, either as it downloads or from the cache.
+     * @return A future of an Optional containing the response.
+     */
+    protected CompletableFuture<Optional<T>> fetch(String query, BodyDecoder<T> decoder) {
+        return fetch(query, decoder, null, null);
+    } // fetch
+
+    /**
+     * Fetches the results for the given query, decoding the body with the given decoder
+     * and telling the listener if the request was refused by the rate limit.
+     *
+     * @param query The query to fetch results for.
+     * @param decoder Decodes the response body, either as it downloads or from the cache.
+     * @param listener Told about this fetch before its future completes.
+     * @return A future of an Optional containing the response.
+     */
+    protected CompletableFuture<Optional<T>> fetch(
+        String query,
+        BodyDecoder<T> decoder,
+        FetchListener<T> listener) {
+        return fetch(query, decoder, null, listener);
+    } // fetch
+
+    /**
+     * Fetches the results for the given query, decoding the body with the given decoder.
+     *
+     * @param spelling The query to fetch results for, as given.
+     * @param decoder Decodes the response body, either as it downloads or from the cache.
+     * @param background Asked before an upstream request is sent for a background
+     *     prefetch, or {@code null} for a user's own fetch.
+     * @param listener Told about this fetch before its future completes, or {@code null}.
+     * @return A future of an Optional containing the response.
+     */
+    private CompletableFuture<Optional<T>> fetch(
+        String spelling,
+        BodyDecoder<T> decoder,
+        BooleanSupplier background,
+        FetchListener<T> listener) {
+        metrics.recordFetch();
+        String query = canonicalize(spelling);
+        Pending<T> pending = new Pending<>();
+        Pending<T> existing = inFlight.putIfAbsent(query, pending);
+        if (existing != null) {
+            metrics.recordCoalesced();
+            recordSpelling(query, spelling, true);
+            trace(query, "-", -1, 0, 0, RequestTrace.Outcome.COALESCED);
+            return existing.resultFor(listener);
+        } // if
+        CompletableFuture<Optional<T>> loaded;
+        try {
+            loaded = load(query, spelling, decoder, background, pending);
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        } // try
+        loaded.whenComplete((result, e) -> {
+            inFlight.remove(query, pending);
+            if (e != null) {
+                metrics.recordError();
+                if (background == null) {
+                    onError(e.getMessage());
+                } // if
+            } // if
+            pending.result.complete(e == null ? result : Optional.empty());
+        });
+        return pending.resultFor(listener);
+    } // fetch
+
+    /**
+     * Loads the response for a query from the cache or, if it is not cached and the rate
+     * limit allows it, from the upstream.
+     *
+     * @param query The canonical query to fetch results for.
+     * @param spelling The query as given.
+     * @param decoder Decodes the response body.
+     * @param background Asked before an upstream request is sent for a background
+     *     prefetch, or {@code null} for a user's own fetch.
+     * @param pending The pending result, marked if the rate limit refuses the request.
+     * @return A future of an Optional containing the response.
+     */
+    private CompletableFuture<Optional<T>> load(
+        String query,
+        String spelling,
+        BodyDecoder<T> decoder,
+        BooleanSupplier background,
+        Pending<T> pending) {
+        HttpRequest built = buildRequest(normalize(spelling));
+        HttpRequest request = built.timeout().isPresent()
+            ? built
+            : HttpRequest.newBuilder(built, (header, value) -> true)
+                .timeout(REQUEST_TIMEOUT)
+                .build();
+        Optional<CompressedBody> cached = cache.lookup(query, request, background != null
+            ? background
+            : () -> rateLimiter.tryAcquireSpare(spareReserve));
+        if (cached.isPresent()) {
+            if (background == null) {
+                rateLimited = false;
+            } // if
+            metrics.recordCacheHit();
+            recordSpelling(query, spelling, true);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Optional.ofNullable(decodeCached(cached.get(), decoder));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } // try
+            }, DECODERS);
+        } // if
+
+        if (background != null) {
+            if (!background.getAsBoolean()) {
+                metrics.recordRateLimited();
+                trace(query, RequestTrace.endpointOf(request), -1, 0, 0,
+                    RequestTrace.Outcome.RATE_LIMITED);
+                return CompletableFuture.completedFuture(Optional.empty());
+            } // if
+        } else if (!rateLimiter.tryAcquire()) {
+            rateLimited = true;
+            pending.rateLimited = true;
+            metrics.recordRateLimited();
+            trace(query, RequestTrace.endpointOf(request), -1, 0, 0,
+                RequestTrace.Outcome.RATE_LIMITED);
+            onRateLimited();
+            return CompletableFuture.completedFuture(Optional.empty());
+        } else {
+            rateLimited = false;
+            onRequest(rateLimiter.getUsed(), rateLimiter.getLimit());
+        } // if
+
+        recordSpelling(query, spelling, false);
+        return concurrency.acquire()
+            .thenCompose(permit -> send(query, request, decoder, background, permit));
+    } // load
+
+    /**
+     * Sends a request to the upstream once the {@link ConcurrencyLimiter} has allowed it,
+     * releasing the permit with what the response said about the upstream's load once the
+     * body has been read. The request's timeout only covers the response headers, so a body
+     * that is still downloading once the timeout has passed since sending is abandoned too,
+     * counting as a drop.
+     *
+     * @param query The query to fetch results for.
+     * @param request The request to send.
+     * @param decoder Decodes the response body.
+     * @param background Asked before an upstream request is sent for a background
+     *     prefetch, or {@code null} for a user's own fetch.
+     * @param permit The permit to send the request.
+     * @return A future of an Optional containing the response.
+     */
+    private CompletableFuture<Optional<T>> send(
+        String query,
+        HttpRequest request,
+        BodyDecoder<T> decoder,
+        BooleanSupplier background,
+        ConcurrencyLimiter.Permit permit) {
+        String endpoint = RequestTrace.endpointOf(request);
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<InputStream>> sent;
+        try {
+            sent = HTTP_CLIENT.sendAsync(request, BodyHandlers.ofInputStream());
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        } // try
+        return sent
+            .thenApplyAsync(response -> {
+                long rtt = System.nanoTime() - start;
+                AtomicBoolean finished = new AtomicBoolean();
+                long left = request.timeout().orElse(REQUEST_TIMEOUT).toNanos() - rtt;
+                CompletableFuture.delayedExecutor(Math.max(0, left), TimeUnit.NANOSECONDS)
+                    .execute(() -> {
+                        if (finished.compareAndSet(false, true)) {
+                            closeQuietly(response.body());
+                        } // if
+                    });
+                ConcurrencyLimiter.Signal signal =
+                    ConcurrencyLimiter.Signal.of(response.statusCode());
+                try {
+                    return Optional.ofNullable(receive(query, response, decoder, start));
+                } catch (IOException e) {
+                    IOException failure = e;
+                    if (!finished.compareAndSet(false, true)) {
+                        // the body was closed because it timed out
+                        signal = ConcurrencyLimiter.Signal.DROPPED;
+                        failure = new HttpTimeoutException("request timed out");
+                    } // if
+                    trace(query, endpoint, response.statusCode(), System.nanoTime() - start, 0,
+                        RequestTrace.Outcome.ERROR);
+                    throw new CompletionException(failure);
+                } finally {
+                    finished.set(true);
+                    permit.release(signal, rtt);
+                    metrics.recordUpstream(System.nanoTime() - start);
+                } // try
+            }, DECODERS)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                permit.release(cause instanceof HttpTimeoutException
+                    ? ConcurrencyLimiter.Signal.DROPPED
+                    : ConcurrencyLimiter.Signal.IGNORED, 0);
+                metrics.recordError();
+                if (!(e instanceof CompletionException && e.getCause() instanceof IOException)) {
+                    trace(query, endpoint, -1, System.nanoTime() - start, 0,
+                        RequestTrace.Outcome.ERROR);
+                } // if
+                if (background == null) {
+                    onError(cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                } // if
+                return Optional.empty();
+            });
+    } // send
+
+    /**
+     * Remembers the spellings a canonical query has been fetched under. The first time a
+     * spelling is served by the cache or a fetch already in flight, and another spelling
+     * was seen before it, it would have been a request of its own without
+     * canonicalization, so it is counted as merged.
+     *
+     * @param query The canonical query.
+     * @param spelling The query as given.
+     * @param shared {@code true} if the fetch was served from the cache or a fetch already
+     *     in flight, or {@code false} if it is sent to the upstream.
+     */
+    private void recordSpelling(String query, String spelling, boolean shared) {
+        synchronized (spellings) {
+            Set<String> seen = spellings.get(query);
+            if (seen == null) {
+                spellings.put(query, new HashSet<>(Set.of(spelling)));
+            } else if (seen.add(spelling) && shared) {
+                metrics.recordMerged();
+            } // if
+        } // synchronized
+    } // recordSpelling
+
+    /**
+     * Closes a response body that is no longer wanted, waking any thread blocked reading it.
+     *
+     * @param body The response body.
+     */
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // the body is abandoned either way
+        } // try
+    } // closeQuietly
+
+    /**
+     * Decodes a response body while it downloads and caches the complete body once the
+     * last byte has arrived.
+     *
+     * @param query The query the response belongs to.
+     * @param response The response, whose headers have arrived.
+     * @param decoder Decodes the response body.
+     * @param start The {@link System#nanoTime()} at which the request was sent.
+     * @return The decoded response, or {@code null} if the body is empty.
+     * @throws IOException if the status code is not 200 or the body could not be read.
+     * @throws JsonParseException if the body is not valid JSON for the response type.
+     */
+    private T receive(
+        String query,
+        HttpResponse<InputStream> response,
+        BodyDecoder<T> decoder,
+        long start) throws IOException {
+        try (InputStream body = response.body()) {
+            final int statusCode = response.statusCode();
+            if (statusCode != 200) {
+                throw new IOException("Response status code not 200:" + statusCode);
+            } // if
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            InputStream tee = new TeeInputStream(body, copy);
+            T result = decoder.decode(new InputStreamReader(tee, StandardCharsets.UTF_8));
+            tee.transferTo(OutputStream.nullOutputStream());
+            byte[] bytes = copy.toByteArray();
+            cache.store(query, bytes, segment(bytes, result), response.headers());
+            trace(query, RequestTrace.endpointOf(response.request()), statusCode,
+                System.nanoTime() - start, copy.size(), RequestTrace.Outcome.MISS);
+            return result;
+        } // try
+    } // receive
+
+    /**
+     * Records a fetch of this source in the {@link RequestTrace}, along with the state of
+     * its rate limit.
+     *
+     * @param query The query that was fetched.
+     * @param endpoint The host and path of the upstream.
+     * @param status The HTTP status code, or {@code -1} if no response was received.
+     * @param latencyNanos The time taken in nanoseconds.
+     * @param bytes The size of the body.
+     * @param outcome How the fetch was served.
+     */
+    private void trace(
+        String query,
+        String endpoint,
+        int status,
+        long latencyNanos,
+        long bytes,
+        RequestTrace.Outcome outcome) {
+        RequestTrace.get().record(name, query, endpoint, status, latencyNanos, bytes, outcome,
+            rateLimiter.getUsed(), rateLimiter.getLimit());
+    } // trace
+
+    /**
+     * Called when a fetch is refused because of the rate limit. Does nothing by default.
+     */
+    protected void onRateLimited() {
+    } // onRateLimited
+
+    /**
+     * Called after a request to the upstream has been counted against the rate limit.
+     * Does nothing by default.
+     *
+     * @param used The number of requests used in the current window.
+     * @param limit The maximum number of requests in one window.
+     */
+    protected void onRequest(int used, int limit) {
+    } // onRequest
+
+    /**
+     * Called when a fetch fails. Shows an error alert by default.
+     *
+     * @param message The error message.
+     */
+    protected void onError(String message) {
+        showAlert(Alert.AlertType.ERROR, message);
+    } // onError
+
+    /**
+     * Gets a value from the {@code "resources/config.properties"} file. A system property
+     * with the same key takes precedence over the file.
+     *
+     * @param key The property key.
+     * @return The property value, or {@code null} if it is not set.
+     */
+    protected static String getConfig(String key) {
+        return getConfig(key, null);
+    } // getConfig
+
+    /**
+     * Gets a value from the {@code "resources/config.properties"} file. A system property
+     * with the same key takes precedence over the file.
+     *
+     * @param key The property key.
+     * @param defaultValue The value used when the property is not set.
+     * @return The property value, or {@code defaultValue} if it is not set.
+     */
+    protected static String getConfig(String key, String defaultValue) {
+        return System.getProperty(key, CONFIG.getProperty(key, defaultValue));
+    } // getConfig
+
+    /**
+     * Creates and initializes an alert variable which will be shown on the screen
+     * with the provided contents. Without a running JavaFX toolkit, such as when a
+     * source is used from the command line, the alert is printed instead.
+     *
+     * @param type The type of the alert.
+     * @param content The contents of the alert.
+     */
+    protected static void showAlert(Alert.AlertType type, String content) {
+        String title = type == Alert.AlertType.WARNING ? "Warning" : "Error";
+        try {
+            Platform.runLater(() -> {
+                Alert alert = new Alert(type);
+                alert.setHeaderText(title);
+                alert.setTitle(title);
+                alert.setContentText(content);
+                alert.showAndWait();
+            });
+        } catch (IllegalStateException e) {
+            System.err.println(title + ": " + content);
+        } // try
+    } // showAlert
+
+    /**
+     * Creates the pool of threads that decode response bodies. The pool keeps at most
+     * {@value #DECODER_THREADS} daemon threads, named {@code "response-decoder-<n>"}, and
+     * lets them exit once they have been idle for a while.
+     *
+     * @return The decoder pool.
+     */
+    private static ExecutorService newDecoders() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor decoders = new ThreadPoolExecutor(
+            DECODER_THREADS, DECODER_THREADS, DECODER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "response-decoder-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        decoders.allowCoreThreadTimeOut(true);
+        return decoders;
+    } // newDecoders
+
+    /**
+     * Loads the {@code "resources/config.properties"} file once for every source.
+     *
+     * @return The loaded properties, empty if the file could not be read.
+     */
+    private static Properties loadConfig() {
+        Properties config = new Properties();
+        try (FileInputStream configFileStream = new FileInputStream(CONFIG_PATH)) {
+            config.load(configFileStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } // try
+        return config;
+    } // loadConfig
+} // HttpResultSource
@@ -0,0 +1,86 @@
+package cs1302.api;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces ingredient lines to a key that ignores case, spacing, quantities, units,
+ * preparation notes and plurals, so that lines such as {@code "2 Cups  Chickpeas"} and
+ * {@code "1 cup chickpea"} are recognized as the same ingredient.
+ */
+public final class IngredientNormalizer {
+
+    private static final Pattern PARENTHESES = Pattern.compile("\\([^)]*\\)");
+    private static final Pattern QUANTITY = Pattern.compile(
+        "^(?:[\\d\\s/⁄.,\\-–]+|a |an |one |two |three |four |half )+");
+    private static final Pattern UNIT = Pattern.compile(
+        "^(?:cups?|c|tablespoons?|tbsps?|tbs|tb|teaspoons?|tsps?|ounces?|oz|pounds?|lbs?|lb"
+        + "|grams?|g|kilograms?|kg|milliliters?|ml|liters?|l|pinch(?:es)?|dash(?:es)?"
+        + "|cloves?|cans?|packages?|pieces?|slices?|sticks?|bunch(?:es)?|handfuls?"
+        + "|large|medium|small|heaping|level|of)\\b\\.?\\s*");
+    private static final Pattern NON_LETTERS = Pattern.compile("[^\\p{L}]+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * Not instantiable.
+     */
+    private IngredientNormalizer() {
+    } // IngredientNormalizer
+
+    /**
+     * Returns the normalized key of an ingredient line.
+     *
+     * @param text The ingredient line as given by the recipe.
+     * @return The key of the ingredient; never {@code null}.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        } // if
+        String key = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        key = PARENTHESES.matcher(key).replaceAll(" ");
+        int comma = key.indexOf(',');
+        if (comma > 0) {
+            key = key.substring(0, comma); // drop preparation notes such as ", chopped"
+        } // if
+        key = SPACES.matcher(key).replaceAll(" ").trim();
+        key = QUANTITY.matcher(key).replaceFirst("");
+        String previous;
+        do {
+            previous = key;
+            key = UNIT.matcher(key).replaceFirst("");
+        } while (!key.equals(previous));
+        key = NON_LETTERS.matcher(key).replaceAll(" ").trim();
+        if (key.isEmpty()) {
+            return SPACES.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        } // if
+
+        StringBuilder singular = new StringBuilder(key.length());
+        for (String word : SPACES.split(key)) {
+            if (singular.length() > 0) {
+                singular.append(' ');
+            } // if
+            singular.append(singular(word));
+        } // for
+        return singular.toString();
+    } // normalize
+
+    /**
+     * Strips a simple English plural ending from a word.
+     *
+     * @param word A lower case word.
+     * @return The word without its plural ending.
+     */
+    private static String singular(String word) {
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        } else if (word.length() > 4 && (word.endsWith("oes") || word.endsWith("ches")
+            || word.endsWith("shes"))) {
+            return word.substring(0, word.length() - 2);
+        } else if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        } // if
+        return word;
+    } // singular
+} // IngredientNormalizer
@@ -0,0 +1,582 @@
+package cs1302.api;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives many virtual users through the app's search and navigate flow at once against
+ * local stub upstreams, then reports throughput, latency percentiles and quota use, and
+ * every result that came back wrong or counter that no longer adds up. The stubs answer
+ * each query with results derived from the query itself, so a result that belongs to
+ * another user's search is caught. Every recipe page and news page also repeats its first
+ * result under another url, which must have been dropped. Users type their dishes in
+ * several spellings, such as {@code "Hummus"} or {@code " hummus  recipes"}, which must
+ * all be served by one upstream request. Run it with
+ * {@code ./run.sh LoadTest}; the process exits with status 1 if any problem was found.
+ *
+ * <p>
+ * Usage: {@code LoadTest [users] [searches per user] [stub latency in ms]}
+ */
+public class LoadTest {
+
+    /**
+     * Local stand-ins for the Edamam, NewsAPI and Open Library endpoints.
+     */
+    private static class StubServer {
+        private final HttpServer server;
+        private final long latencyMillis;
+        private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+
+        /**
+         * Starts the stubs on a free local port.
+         *
+         * @param latencyMillis The typical time taken to answer a request.
+         * @throws IOException if the server could not be started.
+         */
+        StubServer(long latencyMillis) throws IOException {
+            this.latencyMillis = latencyMillis;
+            this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext(RECIPES_PATH, exchange -> answer(exchange, RECIPES_PATH));
+            server.createContext(NEWS_PATH, exchange -> answer(exchange, NEWS_PATH));
+            server.createContext(COOKBOOKS_PATH, exchange -> answer(exchange, COOKBOOKS_PATH));
+            server.setExecutor(Executors.newFixedThreadPool(32, task -> {
+                Thread thread = new Thread(task, "stub-upstream");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+        } // StubServer
+
+        /**
+         * Gets the url of one of the stubs.
+         *
+         * @param path The path of the stub.
+         * @return The url of the stub.
+         */
+        String url(String path) {
+            return "http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + path;
+        } // url
+
+        /**
+         * Gets the number of requests a stub has answered.
+         *
+         * @param path The path of the stub.
+         * @return The number of requests.
+         */
+        long requests(String path) {
+            LongAdder count = requests.get(path);
+            return count == null ? 0 : count.sum();
+        } // requests
+
+        /**
+         * Stops the stubs.
+         */
+        void stop() {
+            server.stop(0);
+        } // stop
+
+        /**
+         * Answers a request with results made from its {@code q} parameter after a
+         * slightly varying delay. Like a real search, the recipe and cookbook stubs answer
+         * every spelling of a dish, such as {@code "easy hummus"}, with the same results.
+         *
+         * @param exchange The request and response.
+         * @param path The path of the stub.
+         * @throws IOException if the response could not be sent.
+         */
+        private void answer(HttpExchange exchange, String path) throws IOException {
+            requests.computeIfAbsent(path, key -> new LongAdder()).increment();
+            String q = parameter(exchange.getRequestURI().getRawQuery(), "q");
+            Object body;
+            if (path.equals(RECIPES_PATH)) {
+                body = recipes(QueryCanonicalizer.canonicalize(q));
+            } else if (path.equals(NEWS_PATH)) {
+                body = news(q);
+            } else {
+                body = cookbooks(
+                    QueryCanonicalizer.canonicalize(q.replace(" subject:cooking", "")));
+            } // if
+            try {
+                Thread.sleep(latencyMillis + ThreadLocalRandom.current().nextLong(
+                    Math.max(1, latencyMillis / 2)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } // try
+            byte[] json = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(json);
+            } // try
+        } // answer
+
+        /**
+         * Finds a parameter of a raw query string.
+         *
+         * @param query The raw query string.
+         * @param name The name of the parameter.
+         * @return The decoded value, or an empty string if it is missing.
+         */
+        private static String parameter(String query, String name) {
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    if (pair.startsWith(name + "=")) {
+                        return URLDecoder.decode(
+                            pair.substring(name.length() + 1), StandardCharsets.UTF_8);
+                    } // if
+                } // for
+            } // if
+            return "";
+        } // parameter
+
+        /**
+         * Makes an Edamam response for a dish.
+         *
+         * @param dish The dish.
+         * @return The response.
+         */
+        private static Map<String, Object> recipes(String dish) {
+            List<Object> hits = new ArrayList<>();
+            Map<String, Object> first = null;
+            for (int i = 0; i < HITS; i++) {
+                Map<String, Object> recipe = new HashMap<>();
+                recipe.put("label", label(dish, i));
+                recipe.put("url", "http://recipes.invalid/" + dish + "/" + i);
+                recipe.put("yield", 2 + i % 4);
+                recipe.put("calories", 300 + 75 * i);
+                recipe.put("cuisineType", List.of(cuisineOf(dish)));
+                recipe.put("ingredients", List.of(
+                    Map.of("text", "2 cups " + dish), Map.of("text", "1 Cup " + dish + "s")));
+                hits.add(Map.of("recipe", recipe));
+                if (i == 0) {
+                    first = recipe;
+                } // if
+            } // for
+            // the first recipe again from a mirror site, which must be dropped
+            Map<String, Object> mirror = new HashMap<>(first);
+            mirror.put("url", "http://mirror.invalid/" + dish + "/0");
+            hits.add(Map.of("recipe", mirror));
+            return Map.of("from", 1, "to", HITS, "count", HITS, "hits", hits);
+        } // recipes
+
+        /**
+         * Makes a NewsAPI response for a query.
+         *
+         * @param q The query.
+         * @return The response.
+         */
+        private static Map<String, Object> news(String q) {
+            List<Object> articles = new ArrayList<>();
+            for (int i = 0; i < ARTICLES; i++) {
+                articles.add(Map.of(
+                    "title", q + " story #" + i,
+                    "url", "http://news.invalid/" + i,
+                    "content", "About " + q + "."));
+            } // for
+            // the first story syndicated under another url, which must be dropped
+            articles.add(Map.of(
+                "title", q + " story #0",
+                "url", "http://syndicated.invalid/0",
+                "content", "About " + q + "."));
+            return Map.of("status", "ok", "totalResults", ARTICLES, "articles", articles);
+        } // news
+
+        /**
+         * Makes an Open Library response for a dish.
+         *
+         * @param dish The dish.
+         * @return The response.
+         */
+        private static Map<String, Object> cookbooks(String dish) {
+            List<Object> docs = new ArrayList<>();
+            for (int i = 0; i < BOOKS; i++) {
+                docs.add(Map.of(
+                    "title", dish + " cookbook #" + i,
+                    "author_name", List.of("Author " + i),
+                    "first_publish_year", 1990 + i));
+            } // for
+            return Map.of("numFound", BOOKS, "docs", docs);
+        } // cookbooks
+    } // StubServer
+
+    private static final String RECIPES_PATH = "/recipes";
+    private static final String NEWS_PATH = "/news";
+    private static final String COOKBOOKS_PATH = "/cookbooks";
+    private static final Gson GSON = new Gson();
+
+    private static final String[] DISHES = {
+        "hummus", "dumpling", "paella", "ramen", "taco", "lasagna", "curry", "pho"
+    };
+    /** The spellings users type a dish in; all of them canonicalize to the dish. */
+    private static final String[] SPELLINGS = {"%s", "%S", "  %s ", "%s  recipes", "Easy %s"};
+    private static final String[] CUISINES = {"mediterranean", "asian", "mexican", "italian"};
+    private static final int HITS = 20;
+    private static final int ARTICLES = 5;
+    private static final int BOOKS = 5;
+    /** The app shows at most three recipes, so a user moves to the next one twice. */
+    private static final int NAVIGATIONS = 2;
+    private static final int MAX_REPORTED_PROBLEMS = 10;
+
+    private final int users;
+    private final int searches;
+    private final List<String> problems = new CopyOnWriteArrayList<>();
+    private final LongAdder emptyRecipes = new LongAdder();
+    private final LongAdder emptyNews = new LongAdder();
+    private final LongAdder emptyCookbooks = new LongAdder();
+    private final long[] searchNanos;
+    private final long[] navigateNanos;
+
+    /**
+     * Constructs a {@code LoadTest}.
+     *
+     * @param users The number of virtual users.
+     * @param searches The number of searches made by each user.
+     */
+    LoadTest(int users, int searches) {
+        this.users = users;
+        this.searches = searches;
+        this.searchNanos = new long[users * searches];
+        this.navigateNanos = new long[users * searches * NAVIGATIONS];
+        Arrays.fill(navigateNanos, -1);
+    } // LoadTest
+
+    /**
+     * Runs the load test.
+     *
+     * @param args The number of users, searches per user and stub latency in milliseconds.
+     * @throws Exception if the stubs could not be started or the run was interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int searches = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 40;
+
+        StubServer stubs = new StubServer(latency);
+        // must be set before any source is loaded, since sources read their endpoints once
+        System.setProperty("recipeapi.endpoint", stubs.url(RECIPES_PATH));
+        System.setProperty("newsapi.endpoint", stubs.url(NEWS_PATH));
+        System.setProperty("openlibrary.endpoint", stubs.url(COOKBOOKS_PATH));
+
+        LoadTest test = new LoadTest(users, searches);
+        long elapsed = test.run(new SearchAggregator());
+        boolean passed = test.report(elapsed, stubs);
+        stubs.stop();
+        System.exit(passed ? 0 : 1);
+    } // main
+
+    /**
+     * Starts every virtual user at once and waits for all of them to finish.
+     *
+     * @param aggregator The aggregator shared by every user, as in the app.
+     * @return The time taken in nanoseconds.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    long run(SearchAggregator aggregator) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(users);
+        for (int user = 0; user < users; user++) {
+            int id = user;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    user(id, aggregator, new Random(id));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    problems.add("user " + id + " failed: " + e);
+                } finally {
+                    done.countDown();
+                } // try
+            });
+        } // for
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - began;
+        pool.shutdown();
+        return elapsed;
+    } // run
+
+    /**
+     * Plays one user: each search waits for every part of its results, like the app
+     * does before enabling navigation, then moves through the next recipes, fetching the
+     * news for each one.
+     *
+     * @param id The number of the user.
+     * @param aggregator The shared aggregator.
+     * @param random Chooses the dishes searched.
+     */
+    private void user(int id, SearchAggregator aggregator, Random random) {
+        for (int i = 0; i < searches; i++) {
+            String dish = DISHES[random.nextInt(DISHES.length)];
+            String typed = String.format(SPELLINGS[random.nextInt(SPELLINGS.length)], dish);
+            List<String> streamed = new CopyOnWriteArrayList<>();
+            long began = System.nanoTime();
+            SearchAggregator.Search search = aggregator.search(typed, hit -> {
+                streamed.add(RecipeView.of(hit).getTitle());
+            });
+            Optional<RecipeAPI.RecipeResponse> recipes = search.getRecipes().join();
+            Optional<NewsSourceAPI.NewsResponse> news = search.getNews().join();
+            Optional<OpenLibrarySearchApi.OpenLibraryResult> cookbooks =
+                search.getCookbooks().join();
+            searchNanos[id * searches + i] = System.nanoTime() - began;
+
+            List<RecipeAPI.RecipeResponse.Hit> hits = recipes
+                .map(RecipeAPI.RecipeResponse::getHits)
+                .orElse(List.of());
+            checkRecipes(dish, hits, streamed, recipes.isPresent());
+            checkNews(dish, news);
+            checkCookbooks(dish, cookbooks);
+
+            for (int next = 1; next <= NAVIGATIONS && next < hits.size(); next++) {
+                RecipeView view = RecipeView.of(hits.get(next));
+                began = System.nanoTime();
+                Optional<NewsSourceAPI.NewsResponse> more =
+                    aggregator.searchNews(view.getCuisine()).join();
+                navigateNanos[(id * searches + i) * NAVIGATIONS + next - 1] =
+                    System.nanoTime() - began;
+                checkNews(dish, more);
+            } // for
+        } // for
+    } // user
+
+    /**
+     * Checks that the recipes of a search belong to its dish and match the hits that
+     * were streamed while they downloaded, if they were not served from the cache.
+     *
+     * @param dish The dish searched.
+     * @param hits The hits returned.
+     * @param streamed The labels of the hits streamed.
+     * @param present Whether a response arrived at all.
+     */
+    private void checkRecipes(
+        String dish,
+        List<RecipeAPI.RecipeResponse.Hit> hits,
+        List<String> streamed,
+        boolean present) {
+        if (!present) {
+            emptyRecipes.increment();
+            return;
+        } // if
+        List<String> labels = new ArrayList<>(hits.size());
+        for (RecipeAPI.RecipeResponse.Hit hit : hits) {
+            labels.add(hit.getRecipe().getLabel());
+        } // for
+        List<String> expected = new ArrayList<>(HITS);
+        for (int i = 0; i < HITS; i++) {
+            expected.add(label(dish, i));
+        } // for
+        if (!labels.equals(expected)) {
+            problem("recipes for " + dish + " were " + labels);
+        } else if (!streamed.isEmpty() && !streamed.equals(expected)) {
+            problem("recipes streamed for " + dish + " were " + streamed);
+        } // if
+    } // checkRecipes
+
+    /**
+     * Checks that the news of a search is about the cuisine of its dish.
+     *
+     * @param dish The dish searched.
+     * @param news The news returned.
+     */
+    private void checkNews(String dish, Optional<NewsSourceAPI.NewsResponse> news) {
+        if (news.isEmpty()) {
+            emptyNews.increment();
+            return;
+        } // if
+        List<NewsSourceAPI.NewsResponse.Article> articles = news.get().getArticles();
+        String topic = cuisineOf(dish) + " cuisine";
+        if (articles == null || articles.size() != ARTICLES) {
+            problem("news for " + dish + " had " + articles);
+            return;
+        } // if
+        for (NewsSourceAPI.NewsResponse.Article article : articles) {
+            if (!article.getTitle().startsWith(topic)) {
+                problem("news for " + dish + " included \"" + article.getTitle() + "\"");
+                return;
+            } // if
+        } // for
+    } // checkNews
+
+    /**
+     * Checks that the cookbooks of a search are about its dish.
+     *
+     * @param dish The dish searched.
+     * @param cookbooks The cookbooks returned.
+     */
+    private void checkCookbooks(
+        String dish,
+        Optional<OpenLibrarySearchApi.OpenLibraryResult> cookbooks) {
+        if (cookbooks.isEmpty()) {
+            emptyCookbooks.increment();
+            return;
+        } // if
+        OpenLibrarySearchApi.OpenLibraryDoc[] docs = cookbooks.get().getDocs();
+        if (docs.length != BOOKS) {
+            problem("cookbooks for " + dish + " had " + docs.length + " books");
+            return;
+        } // if
+        for (OpenLibrarySearchApi.OpenLibraryDoc doc : docs) {
+            if (!doc.getTitle().startsWith(dish + " cookbook")) {
+                problem("cookbooks for " + dish + " included \"" + doc.getTitle() + "\"");
+                return;
+            } // if
+        } // for
+    } // checkCookbooks
+
+    /**
+     * Prints the results of the run, including any counter of a source that disagrees
+     * with what its stub saw.
+     *
+     * @param elapsedNanos The time taken by the run.
+     * @param stubs The stubs the run was made against.
+     * @return {@code true} if no problem was found.
+     */
+    boolean report(long elapsedNanos, StubServer stubs) {
+        double seconds = elapsedNanos / 1e9;
+        long[] navigations = Arrays.stream(navigateNanos).filter(n -> n >= 0).toArray();
+        System.out.printf("%d users x %d searches in %.2f s%n", users, searches, seconds);
+        System.out.printf("throughput: %.1f searches/s, %.1f navigations/s%n",
+            searchNanos.length / seconds, navigations.length / seconds);
+        System.out.printf("search latency:   p50 %7.1f ms  p99 %7.1f ms%n",
+            percentile(searchNanos, 50), percentile(searchNanos, 99));
+        System.out.printf("navigate latency: p50 %7.1f ms  p99 %7.1f ms%n",
+            percentile(navigations, 50), percentile(navigations, 99));
+        System.out.printf("empty parts: recipes=%d news=%d cookbooks=%d%n",
+            emptyRecipes.sum(), emptyNews.sum(), emptyCookbooks.sum());
+
+        Map<String, String> paths = Map.of(
+            RecipeAPI.NAME, RECIPES_PATH,
+            NewsSourceAPI.NAME, NEWS_PATH,
+            OpenLibrarySearchApi.NAME, COOKBOOKS_PATH);
+        for (ResultSource<?> source : ResultSources.all()) {
+            SourceMetrics metrics = source.getMetrics();
+            long sent = stubs.requests(paths.get(source.getName()));
+            String quota = source instanceof HttpResultSource
+                ? ((HttpResultSource<?>) source).getRemainingRequests() + " left, "
+                + ((HttpResultSource<?>) source).getConcurrencyLimiter()
+                : "unknown";
+            System.out.printf("%s: %s; stub saw %d; quota %s%n",
+                source.getName(), metrics, sent, quota);
+            if (sent != metrics.getUpstreamRequests()) {
+                problem(source.getName() + " counted " + metrics.getUpstreamRequests()
+                    + " upstream requests but its stub saw " + sent);
+            } // if
+            long served = metrics.getCacheHits() + metrics.getCoalesced()
+                + metrics.getUpstreamRequests() + metrics.getRateLimited();
+            if (metrics.getErrors() == 0 && served != metrics.getFetches()) {
+                problem(source.getName() + " served " + served + " of "
+                    + metrics.getFetches() + " fetches");
+            } // if
+            if (metrics.getMerged() > metrics.getCacheHits() + metrics.getCoalesced()) {
+                problem(source.getName() + " merged " + metrics.getMerged()
+                    + " fetches it did not serve from the cache or a fetch in flight");
+            } // if
+            if (metrics.getErrors() > 0) {
+                problem(source.getName() + " had " + metrics.getErrors() + " errors");
+            } // if
+        } // for
+
+        checkCalorieBands();
+        if (problems.isEmpty()) {
+            System.out.println("no problems found");
+            return true;
+        } // if
+        System.out.printf("%d problems found:%n", problems.size());
+        for (String problem : problems.subList(0, Math.min(MAX_REPORTED_PROBLEMS,
+            problems.size()))) {
+            System.out.println("  " + problem);
+        } // for
+        return false;
+    } // report
+
+    /**
+     * Checks that the calorie band of a ranking query survives canonicalization, so that
+     * two spellings of a dish share a band's cache entry while the request still asks for
+     * the band.
+     */
+    private void checkCalorieBands() {
+        RecipeAPI recipes = RecipeAPI.provider();
+        String typed = RecipeAPI.calorieBandQuery(" Easy  Tacos", "500-1000");
+        String key = recipes.canonicalize(typed);
+        if (!key.equals(recipes.canonicalize(RecipeAPI.calorieBandQuery("taco", "500-1000")))
+            || !key.endsWith("500-1000")) {
+            problem("calorie band query canonicalized to " + key);
+        } // if
+        String uri = recipes.buildRequest(recipes.normalize(typed)).uri().toString();
+        if (!uri.contains("q=easy+tacos&") || !uri.endsWith("&calories=500-1000")) {
+            problem("calorie band query requested " + uri);
+        } // if
+    } // checkCalorieBands
+
+    /**
+     * Records a problem found during the run.
+     *
+     * @param message The description of the problem.
+     */
+    private void problem(String message) {
+        problems.add(message);
+    } // problem
+
+    /**
+     * Gets a percentile of a set of latencies.
+     *
+     * @param nanos The latencies in nanoseconds.
+     * @param percent The percentile.
+     * @return The latency at the percentile in milliseconds, or {@code 0} if there is none.
+     */
+    private static double percentile(long[] nanos, int percent) {
+        if (nanos.length == 0) {
+            return 0;
+        } // if
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    } // percentile
+
+    /**
+     * Gets the label the stub gives a recipe.
+     *
+     * @param dish The dish.
+     * @param index The index of the recipe.
+     * @return The label.
+     */
+    private static String label(String dish, int index) {
+        return dish + " #" + index;
+    } // label
+
+    /**
+     * Gets the cuisine the stub gives a dish.
+     *
+     * @param dish The dish.
+     * @return The cuisine.
+     */
+    private static String cuisineOf(String dish) {
+        return CUISINES[Math.floorMod(dish.hashCode(), CUISINES.length)];
+    } // cuisineOf
+} // LoadTest
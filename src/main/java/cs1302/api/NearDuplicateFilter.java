@@ -0,0 +1,224 @@
+package cs1302.api;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Drops results that are nearly the same as a result already kept, such as one recipe
+ * copied by several mirror sites or one syndicated article published under many urls.
+ * Every result is reduced to a set of features, such as the words of its title, and
+ * fingerprinted with MinHash: for each of {@value #HASHES} hash functions the smallest
+ * hash of any feature is kept. The share of equal minimums between two fingerprints
+ * estimates how much their feature sets overlap (their Jaccard similarity), so results
+ * are compared in constant time however long their text is. A filter is used for one list
+ * of results at a time, by one thread.
+ *
+ * @param <T> The type of the results.
+ */
+public class NearDuplicateFilter<T> {
+
+    /** The number of hash functions in a fingerprint. */
+    private static final int HASHES = 64;
+    /** The similarity above which two recipes are the same recipe. */
+    private static final double RECIPE_THRESHOLD = 0.8;
+    /** The similarity above which two articles are the same article. */
+    private static final double ARTICLE_THRESHOLD = 0.8;
+    /** The number of words in one shingle of an article's content. */
+    private static final int SHINGLE_WORDS = 3;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        } // for
+    } // static
+
+    private final Function<T, Set<String>> features;
+    private final double threshold;
+    private final List<long[]> kept = new ArrayList<>();
+    private int dropped;
+
+    /**
+     * Constructs a {@code NearDuplicateFilter}.
+     *
+     * @param features Reduces a result to the features it is compared by.
+     * @param threshold The estimated similarity, between 0 and 1, at or above which a
+     *     result is a near-duplicate.
+     */
+    public NearDuplicateFilter(Function<T, Set<String>> features, double threshold) {
+        this.features = features;
+        this.threshold = threshold;
+    } // NearDuplicateFilter
+
+    /**
+     * Creates a filter of recipe hits, comparing the words of their labels and their
+     * normalized ingredients.
+     *
+     * @return The filter.
+     */
+    public static NearDuplicateFilter<RecipeAPI.RecipeResponse.Hit> recipes() {
+        return new NearDuplicateFilter<>(hit -> {
+            Set<String> found = new HashSet<>();
+            RecipeAPI.RecipeResponse.Hit.Recipe recipe = hit.getRecipe();
+            if (recipe == null) {
+                return found;
+            } // if
+            found.addAll(words(recipe.getLabel()));
+            if (recipe.getIngredients() != null) {
+                for (RecipeAPI.RecipeResponse.Hit.Recipe.Ingredient ingredient
+                    : recipe.getIngredients()) {
+                    String key = IngredientNormalizer.normalize(ingredient.getText());
+                    if (!key.isEmpty()) {
+                        found.add("ingredient:" + key);
+                    } // if
+                } // for
+            } // if
+            return found;
+        }, RECIPE_THRESHOLD);
+    } // recipes
+
+    /**
+     * Creates a filter of news articles, comparing the words of their titles and the runs
+     * of words in their content.
+     *
+     * @return The filter.
+     */
+    public static NearDuplicateFilter<NewsSourceAPI.NewsResponse.Article> articles() {
+        return new NearDuplicateFilter<>(article -> {
+            Set<String> found = new HashSet<>(words(article.getTitle()));
+            List<String> content = words(article.getContent());
+            for (int i = 0; i + SHINGLE_WORDS <= content.size(); i++) {
+                found.add("content:" + String.join(" ", content.subList(i, i + SHINGLE_WORDS)));
+            } // for
+            return found;
+        }, ARTICLE_THRESHOLD);
+    } // articles
+
+    /**
+     * Keeps a result unless it is a near-duplicate of a result kept before.
+     *
+     * @param result The result.
+     * @return {@code true} if the result is kept.
+     */
+    public boolean accept(T result) {
+        Set<String> found = features.apply(result);
+        if (found.isEmpty()) {
+            return true;
+        } // if
+        long[] fingerprint = fingerprint(found);
+        for (long[] other : kept) {
+            if (similarity(fingerprint, other) >= threshold) {
+                dropped++;
+                return false;
+            } // if
+        } // for
+        kept.add(fingerprint);
+        return true;
+    } // accept
+
+    /**
+     * Returns the results that are not near-duplicates of an earlier result, in order.
+     *
+     * @param results The results.
+     * @return The results kept.
+     */
+    public List<T> filter(List<T> results) {
+        List<T> distinct = new ArrayList<>(results.size());
+        for (T result : results) {
+            if (accept(result)) {
+                distinct.add(result);
+            } // if
+        } // for
+        return distinct;
+    } // filter
+
+    /**
+     * Gets the number of results dropped as near-duplicates.
+     * @return The number of dropped results.
+     */
+    public int getDropped() {
+        return dropped;
+    } // getDropped
+
+    /**
+     * Splits a text into its words, folded to lower case.
+     *
+     * @param text The text, or {@code null}.
+     * @return The words of the text, in order.
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        } // if
+        String folded =
+            Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        for (String word : NON_WORD.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            } // if
+        } // for
+        return words;
+    } // words
+
+    /**
+     * Computes the MinHash fingerprint of a set of features.
+     *
+     * @param found The features.
+     * @return The smallest hash of any feature under each hash function.
+     */
+    private static long[] fingerprint(Set<String> found) {
+        long[] minimums = new long[HASHES];
+        Arrays.fill(minimums, Long.MAX_VALUE);
+        for (String feature : found) {
+            long base = mix(feature.hashCode() * 0x9E3779B97F4A7C15L + feature.length());
+            for (int i = 0; i < HASHES; i++) {
+                long hash = mix(base ^ SEEDS[i]);
+                if (hash < minimums[i]) {
+                    minimums[i] = hash;
+                } // if
+            } // for
+        } // for
+        return minimums;
+    } // fingerprint
+
+    /**
+     * Estimates the Jaccard similarity of the feature sets behind two fingerprints.
+     *
+     * @param a One fingerprint.
+     * @param b The other fingerprint.
+     * @return The share of hash functions whose minimums are equal.
+     */
+    private static double similarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            } // if
+        } // for
+        return (double) equal / HASHES;
+    } // similarity
+
+    /**
+     * Scrambles the bits of a value (the finalizer of SplitMix64).
+     *
+     * @param value The value.
+     * @return The scrambled value.
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    } // mix
+} // NearDuplicateFilter
@@ -1,36 +1,47 @@
 package cs1302.api;
 
-import java.net.http.HttpResponse.BodyHandlers;
-import javafx.scene.control.Alert.AlertType;
-import javafx.scene.control.Alert;
-import javafx.application.Platform;
-import java.nio.charset.StandardCharsets;
-import com.google.gson.GsonBuilder;
-import com.google.gson.Gson;
-import java.net.http.HttpClient;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.util.Properties;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
-import java.net.URLEncoder;
-import java.net.URI;
-import java.io.FileInputStream;
-import java.io.IOException;
+import javafx.scene.control.Alert;
 
 /**
  * This class interatcs with the NewsAPI to search for news articles about the given
- * cuisines.
+ * cuisines. Registered as the {@value #NAME} {@link ResultSource}; the query is the
+ * cuisine type to search for.
  */
-public class NewsSourceAPI {
+public class NewsSourceAPI extends HttpResultSource<NewsSourceAPI.NewsResponse> {
+
+    /** The name this source is registered under. */
+    public static final String NAME = "news";
 
     /**
      * Represents a response structure from the NewsApi.
      */
-    public class NewsResponse {
+    public static class NewsResponse {
 
         private List<Article> articles;
 
+        /**
+         * Constructs an empty {@code NewsResponse}, to be filled in by {@code Gson}.
+         */
+        NewsResponse() {
+        } // NewsResponse
+
+        /**
+         * Constructs a {@code NewsResponse} of the given articles.
+         *
+         * @param articles The articles.
+         */
+        NewsResponse(List<Article> articles) {
+            this.articles = articles;
+        } // NewsResponse
+
         /**
          * Gets a list of the articles.
          * @return A list of articles.
@@ -47,6 +58,25 @@ public class NewsSourceAPI {
             private String url;
             private String content;
 
+            /**
+             * Constructs an empty {@code Article}, to be filled in by {@code Gson}.
+             */
+            Article() {
+            } // Article
+
+            /**
+             * Constructs an {@code Article}.
+             *
+             * @param title The title of the article.
+             * @param url The url link of the article.
+             * @param content The contents of the article.
+             */
+            Article(String title, String url, String content) {
+                this.title = title;
+                this.url = url;
+                this.content = content;
+            } // Article
+
             /**
              * Gtes the title of the article.
              * @return The title of the article.
@@ -73,120 +103,88 @@ public class NewsSourceAPI {
         } // Article
     } // NewsResponse
 
-    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
-        .version(HttpClient.Version.HTTP_2)
-        .followRedirects(HttpClient.Redirect.NORMAL)
-        .build();
-
-    private static Gson GSON = new GsonBuilder()
-        .setPrettyPrinting()
-        .create();
+    private static final NewsSourceAPI INSTANCE = new NewsSourceAPI();
 
     private static final int MAX_REQUESTS_PER_DAY = 100;
-    private static int newsApiRequests = 0;
-    private static boolean rateLimitReached = false;
 
-    private static String configPath = "resources/config.properties";
+    private static final String API_KEY = getConfig("newsapi.apikey");
+    private static final String ENDPOINT =
+        getConfig("newsapi.endpoint", "https://newsapi.org/v2/everything");
 
-    private static String API_KEY;
-    private static final String ENDPOINT = "https://newsapi.org/v2/everything";
+    /**
+     * Constructs the {@code NewsSourceAPI} source. Use {@link #provider()} to get the
+     * registered instance.
+     */
+    private NewsSourceAPI() {
+        super(NAME, NewsResponse.class, Duration.ofMinutes(15),
+            new RateLimiter(MAX_REQUESTS_PER_DAY, Duration.ofDays(1)), MAX_REQUESTS_PER_DAY / 2);
+    } // NewsSourceAPI
 
     /**
-     * Searches for news articles based on the specific cuisines. Sends an HttpRequest
-     * and checks the status code. If the status code is not 200, it will show an
-     * alert to the UI.
+     * Returns the instance of this source registered with the {@code ServiceLoader}.
      *
-     * @param cuisines The list of cuisines to search for.
-     * @return An Optional NewsResponse containing the search results.
+     * @return The {@code NewsSourceAPI} source.
      */
-    public static Optional<NewsSourceAPI.NewsResponse> searchNews(List<String> cuisines) {
-        try {
-            try (FileInputStream configFileStream = new FileInputStream(configPath)) {
-                Properties config = new Properties();
-                config.load(configFileStream);
-                API_KEY = config.getProperty("newsapi.apikey");
-            } catch (IOException e) {
-                e.printStackTrace();
-            } // try
-
-            if (!checkNewsRateLimit()) {
-                String cuisineString = cuisines.get(0) + " cuisine";
-                String url = String.format("%s?apiKey=%s&q=%s&language=en&sortBy=relevancy",
-                    ENDPOINT,
-                    API_KEY,
-                    URLEncoder.encode(cuisineString, StandardCharsets.UTF_8));
-
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .build();
-
-                HttpResponse<String> response = HTTP_CLIENT
-                    .send(request, BodyHandlers.ofString());
-
-                newsApiRequests++;
-
-                final int statusCode = response.statusCode();
-                if (statusCode == 200) {
-                    String responseBody = response.body();
-                    NewsResponse result = GSON.fromJson(responseBody, NewsResponse.class);
-                    return Optional.ofNullable(result);
-                } else {
-                    throw new IOException("Response status code not 200:" + statusCode);
-                } // if
-            } else {
-                newsApiRequests = 0;
-            } // if
-        } catch (IOException | InterruptedException e) {
-            Platform.runLater(() -> {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setHeaderText("Error");
-                alert.setTitle("Error");
-                alert.setContentText(e.getMessage());
-                alert.showAndWait();
-            });
-        } // try
-        return Optional.empty();
-    } // fetchNews
+    public static NewsSourceAPI provider() {
+        return INSTANCE;
+    } // provider
 
     /**
-     * Checks whether or not the number of api requests exceeds the max amount of requests
-     * per day. If it reaches 50% or 100%, it will send a warning to the screen and change the
-     * rateLimitReached variable to true.
+     * Builds the search request for news articles about the given cuisine.
      *
-     * @return Will return {@code true} if the max requests per day has been reached and
-     * {@code false} if it hasn't.
+     * @param cuisine The cuisine type to search for.
+     * @return The request to the NewsAPI.
      */
-    private static boolean checkNewsRateLimit() {
-        if (newsApiRequests == MAX_REQUESTS_PER_DAY / 2) {
-            Platform.runLater(() -> sendWarning("50% of your news api requests have been used!"));
-        } else if (newsApiRequests >= MAX_REQUESTS_PER_DAY) {
-            Platform.runLater(() -> sendWarning("NewsApi rate limit has been reached. " +
-                "There will be a pause for a minute."));
-            return rateLimitReached = true;
-        }
-        return rateLimitReached = false;
-    } // checkNewsRateLimit
+    @Override
+    protected HttpRequest buildRequest(String cuisine) {
+        String cuisineString = cuisine + " cuisine";
+        String url = String.format("%s?apiKey=%s&q=%s&language=en&sortBy=relevancy",
+            ENDPOINT,
+            API_KEY,
+            URLEncoder.encode(cuisineString, StandardCharsets.UTF_8));
+
+        return HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .build();
+    } // buildRequest
 
     /**
-     * Recieves the boolean value of the rateLimitReached variable.
+     * Decodes a news response, dropping articles that are near-duplicates of an earlier
+     * article, such as one syndicated story published under many urls.
      *
-     * @return The boolean value of the {@code rateLimitReached} variable.
+     * @param reader The JSON text of the response body.
+     * @return The decoded response, or {@code null} if the body is empty.
+     * @throws IOException if the stream could not be read.
      */
-    public static boolean getRateLimitReached() {
-        return rateLimitReached;
-    } // getRateLimitReached
+    @Override
+    protected NewsResponse decode(Reader reader) throws IOException {
+        NewsResponse response = super.decode(reader);
+        if (response != null && response.articles != null) {
+            response.articles = NearDuplicateFilter.articles().filter(response.articles);
+        } // if
+        return response;
+    } // decode
 
     /**
-     * Creates and initializes an alert variable which will be shown on the screen
-     * with the provided contents.
+     * Sends a warning to the screen once 50% of the daily requests have been used.
      *
-     * @param content The contents of the warning.
+     * @param used The number of requests used today.
+     * @param limit The maximum number of requests per day.
+     */
+    @Override
+    protected void onRequest(int used, int limit) {
+        if (used == limit / 2) {
+            showAlert(Alert.AlertType.WARNING, "50% of your news api requests have been used!");
+        } // if
+    } // onRequest
+
+    /**
+     * Sends a warning to the screen once the max amount of requests per day has been
+     * reached.
      */
-    private static void sendWarning(String content) {
-        Alert alert = new Alert(Alert.AlertType.WARNING);
-        alert.setHeaderText("Warning");
-        alert.setTitle("Warning");
-        alert.setContentText(content);
-        alert.showAndWait();
-    } // sendAlert
+    @Override
+    protected void onRateLimited() {
+        showAlert(Alert.AlertType.WARNING, "NewsApi rate limit has been reached. "
+            + "There will be a pause for a minute.");
+    } // onRateLimited
 } // NewsSourceAPI
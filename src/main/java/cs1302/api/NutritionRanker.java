@@ -0,0 +1,288 @@
+package cs1302.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+/**
+ * Ranks the recipes for a dish by nutrition instead of Edamam's order. Edamam links its
+ * result pages with a cursor, so further pages cannot be requested side by side; instead
+ * the dish is searched in several calorie bands at once, each returning a different
+ * slice of the results, for as many bands as the rate limit can spare. Every hit is then
+ * measured per serving with a parallel stream and only the best {@code k} are kept in a
+ * bounded heap, so a large result set is ranked in one pass.
+ */
+public class NutritionRanker {
+
+    /**
+     * The orders recipes can be ranked in.
+     */
+    public enum Sort {
+        /** Edamam's own order; nothing is ranked. */
+        BEST_MATCH("Best match", null),
+        /** Fewest calories per serving first. */
+        LOWEST_CALORIES("Lowest calories / serving",
+            Comparator.comparingDouble(RankedRecipe::getCaloriesPerServing)),
+        /** Most calories per serving first. */
+        HIGHEST_CALORIES("Highest calories / serving",
+            Comparator.comparingDouble(RankedRecipe::getCaloriesPerServing).reversed()),
+        /** Most servings first. */
+        HIGHEST_YIELD("Highest yield",
+            Comparator.comparingDouble(RankedRecipe::getYield).reversed());
+
+        private final String label;
+        private final Comparator<RankedRecipe> order;
+
+        /**
+         * Constructs a {@code Sort}.
+         *
+         * @param label The label shown to the user.
+         * @param order The order of the ranked recipes, best first.
+         */
+        Sort(String label, Comparator<RankedRecipe> order) {
+            this.label = label;
+            this.order = order;
+        } // Sort
+
+        @Override
+        public String toString() {
+            return label;
+        } // toString
+    } // Sort
+
+    /**
+     * A recipe hit along with the metrics it is ranked by.
+     */
+    public static class RankedRecipe {
+        private final RecipeAPI.RecipeResponse.Hit hit;
+        private final double yield;
+        private final double caloriesPerServing;
+
+        /**
+         * Measures a recipe hit.
+         *
+         * @param hit A hit with a recipe.
+         */
+        RankedRecipe(RecipeAPI.RecipeResponse.Hit hit) {
+            RecipeAPI.RecipeResponse.Hit.Recipe recipe = hit.getRecipe();
+            this.hit = hit;
+            this.yield = recipe.getYield();
+            this.caloriesPerServing = recipe.getCalories() / Math.max(1, recipe.getYield());
+        } // RankedRecipe
+
+        /**
+         * Gets the ranked hit.
+         * @return The hit.
+         */
+        public RecipeAPI.RecipeResponse.Hit getHit() {
+            return hit;
+        } // getHit
+
+        /**
+         * Gets the number of servings of the recipe.
+         * @return The yield.
+         */
+        public double getYield() {
+            return yield;
+        } // getYield
+
+        /**
+         * Gets the calories of one serving of the recipe.
+         * @return The calories per serving.
+         */
+        public double getCaloriesPerServing() {
+            return caloriesPerServing;
+        } // getCaloriesPerServing
+    } // RankedRecipe
+
+    /** Total calorie bands searched side by side, lowest first. */
+    private static final String[] CALORIE_BANDS = {
+        "0-500", "500-1000", "1000-2000", "2000-4000", "4000+"
+    };
+
+    /** Requests always left for interactive searches. */
+    private static final int RESERVED_REQUESTS = 2;
+
+    /** The share of the requests left above the reserve that one ranking may spend. */
+    private static final int BAND_SHARE_DIVISOR = 2;
+
+    private final RecipeAPI recipes;
+
+    /**
+     * Constructs a {@code NutritionRanker} drawing on the given recipe source.
+     *
+     * @param recipes The recipe source.
+     */
+    public NutritionRanker(RecipeAPI recipes) {
+        this.recipes = recipes;
+    } // NutritionRanker
+
+    /**
+     * Ranks the recipes for a dish. The hits already found for the dish are ranked along
+     * with those of the calorie bands the rate limit can spare, so when no band can be
+     * afforded the given hits are still ranked. At most half of the requests left above
+     * {@value #RESERVED_REQUESTS} are spent on bands, those nearest the top of the order
+     * first. Bands are fetched like prefetches: each one takes its request only if
+     * {@value #RESERVED_REQUESTS} requests are still left after it, and a refused band is
+     * silently left out, never pausing the user's searches. Bands that have not arrived
+     * by the search's deadline are left out too. With {@link Sort#BEST_MATCH} the found
+     * hits are only filtered, keeping Edamam's order, and no band is searched.
+     *
+     * @param dish The dish to rank recipes for.
+     * @param found The hits already found for the dish, in Edamam's order.
+     * @param sort The order to rank in.
+     * @param filter Only recipes accepted by the filter are ranked.
+     * @param k The most recipes to return.
+     * @param budgetDeadline The {@link System#nanoTime()} at which the search's budget is
+     *     spent; the ranking completes by then with whatever bands have arrived.
+     * @return A future of the best {@code k} hits, best first.
+     */
+    public CompletableFuture<List<RecipeAPI.RecipeResponse.Hit>> rank(
+        String dish,
+        List<RecipeAPI.RecipeResponse.Hit> found,
+        Sort sort,
+        Predicate<RankedRecipe> filter,
+        int k,
+        long budgetDeadline) {
+        if (sort.order == null) {
+            List<RecipeAPI.RecipeResponse.Hit> kept = new ArrayList<>();
+            for (RecipeAPI.RecipeResponse.Hit hit : found) {
+                if (kept.size() < k && hit.getRecipe() != null
+                    && filter.test(new RankedRecipe(hit))) {
+                    kept.add(hit);
+                } // if
+            } // for
+            return CompletableFuture.completedFuture(Collections.unmodifiableList(kept));
+        } // if
+
+        int spare = recipes.getRemainingRequests() - RESERVED_REQUESTS;
+        int bands = Math.min(CALORIE_BANDS.length, Math.max(0, spare / BAND_SHARE_DIVISOR));
+        boolean highestFirst = sort == Sort.HIGHEST_CALORIES;
+        List<CompletableFuture<Optional<RecipeAPI.RecipeResponse>>> pages = new ArrayList<>();
+        for (int i = 0; i < bands; i++) {
+            String band = CALORIE_BANDS[highestFirst ? CALORIE_BANDS.length - 1 - i : i];
+            pages.add(recipes.prefetch(
+                RecipeAPI.calorieBandQuery(dish, band), RESERVED_REQUESTS));
+        } // for
+
+        long remaining = TimeUnit.NANOSECONDS.toMillis(budgetDeadline - System.nanoTime());
+        return CompletableFuture.allOf(pages.toArray(new CompletableFuture<?>[0]))
+            .completeOnTimeout(null, Math.max(0, remaining), TimeUnit.MILLISECONDS)
+            .thenApply(ignored -> {
+                List<RecipeAPI.RecipeResponse.Hit> all = new ArrayList<>(found);
+                for (CompletableFuture<Optional<RecipeAPI.RecipeResponse>> page : pages) {
+                    // a band still downloading at the deadline is left out
+                    page.getNow(Optional.empty())
+                        .map(RecipeAPI.RecipeResponse::getHits)
+                        .ifPresent(all::addAll);
+                } // for
+                return topK(distinct(all), sort.order, filter, k);
+            });
+    } // rank
+
+    /**
+     * Keeps the best {@code k} recipes of the given hits in one parallel pass.
+     *
+     * @param hits The hits to rank.
+     * @param order The order of the ranked recipes, best first.
+     * @param filter Only recipes accepted by the filter are ranked.
+     * @param k The most recipes to return.
+     * @return The best {@code k} hits, best first.
+     */
+    static List<RecipeAPI.RecipeResponse.Hit> topK(
+        List<RecipeAPI.RecipeResponse.Hit> hits,
+        Comparator<RankedRecipe> order,
+        Predicate<RankedRecipe> filter,
+        int k) {
+        PriorityQueue<RankedRecipe> heap = hits.parallelStream()
+            .filter(hit -> hit.getRecipe() != null)
+            .map(RankedRecipe::new)
+            .filter(filter)
+            .collect(boundedHeap(order, k));
+
+        List<RankedRecipe> best = new ArrayList<>(heap);
+        best.sort(order);
+        List<RecipeAPI.RecipeResponse.Hit> ranked = new ArrayList<>(best.size());
+        for (RankedRecipe recipe : best) {
+            ranked.add(recipe.getHit());
+        } // for
+        return Collections.unmodifiableList(ranked);
+    } // topK
+
+    /**
+     * A collector keeping only the best {@code k} elements in a heap whose head is the
+     * worst element kept, so each element costs at most {@code O(log k)}.
+     *
+     * @param order The order of the elements, best first.
+     * @param k The most elements to keep.
+     * @return The collector.
+     */
+    private static Collector<RankedRecipe, ?, PriorityQueue<RankedRecipe>> boundedHeap(
+        Comparator<RankedRecipe> order,
+        int k) {
+        Comparator<RankedRecipe> worstFirst = order.reversed();
+        return Collector.of(
+            () -> new PriorityQueue<>(k + 1, worstFirst),
+            (heap, recipe) -> offer(heap, recipe, order, k),
+            (left, right) -> {
+                for (RankedRecipe recipe : right) {
+                    offer(left, recipe, order, k);
+                } // for
+                return left;
+            });
+    } // boundedHeap
+
+    /**
+     * Adds an element to a bounded heap, dropping the worst element if it grows past
+     * {@code k}.
+     *
+     * @param heap The heap, worst element first.
+     * @param recipe The element to add.
+     * @param order The order of the elements, best first.
+     * @param k The most elements to keep.
+     */
+    private static void offer(
+        PriorityQueue<RankedRecipe> heap,
+        RankedRecipe recipe,
+        Comparator<RankedRecipe> order,
+        int k) {
+        if (heap.size() < k) {
+            heap.add(recipe);
+        } else if (k > 0 && order.compare(recipe, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(recipe);
+        } // if
+    } // offer
+
+    /**
+     * Drops hits whose recipe url has already been seen, since calorie bands and the
+     * original results can overlap, and hits that are near-duplicates of an earlier hit,
+     * since each band's page was only filtered on its own.
+     *
+     * @param hits The hits to check.
+     * @return The distinct hits, in order.
+     */
+    private static List<RecipeAPI.RecipeResponse.Hit> distinct(
+        List<RecipeAPI.RecipeResponse.Hit> hits) {
+        Set<String> seen = new HashSet<>();
+        NearDuplicateFilter<RecipeAPI.RecipeResponse.Hit> duplicates =
+            NearDuplicateFilter.recipes();
+        List<RecipeAPI.RecipeResponse.Hit> distinct = new ArrayList<>(hits.size());
+        for (RecipeAPI.RecipeResponse.Hit hit : hits) {
+            String url = hit.getRecipe() == null ? null : hit.getRecipe().getUrl();
+            if ((url == null || seen.add(url)) && duplicates.accept(hit)) {
+                distinct.add(hit);
+            } // if
+        } // for
+        return distinct;
+    } // distinct
+} // NutritionRanker
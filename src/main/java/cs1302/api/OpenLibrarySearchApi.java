@@ -1,63 +1,148 @@
 package cs1302.api;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
 import java.net.http.HttpRequest;
 import java.nio.charset.StandardCharsets;
-import java.util.Optional;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import java.time.Duration;
 
 /**
- * Example using Open Library Search API.
+ * Searches the Open Library Search API for cookbooks related to a dish. Registered as the
+ * {@value #NAME} {@link ResultSource}; the query is the dish to find cookbooks for.
  *
  * <p>
- * To run this example on Odin, use the following commands:
+ * To run the example search on Odin, use the following commands:
  *
  * <pre>
  * $ mvn clean compile
  * $ mvn exec:java -Dexec.mainClass=cs1302.api.OpenLibrarySearchApi
  * </pre>
  */
-public class OpenLibrarySearchApi {
+public class OpenLibrarySearchApi
+    extends HttpResultSource<OpenLibrarySearchApi.OpenLibraryResult> {
+
+    /** The name this source is registered under. */
+    public static final String NAME = "cookbooks";
 
     /**
      * Represents an Open Library Search API document.
      */
-    private static class OpenLibraryDoc {
+    public static class OpenLibraryDoc {
         String type;
         String title;
+        String[] author_name;
+        int first_publish_year;
+
+        /**
+         * Constructs an empty {@code OpenLibraryDoc}, to be filled in by {@code Gson}.
+         */
+        OpenLibraryDoc() {
+        } // OpenLibraryDoc
+
+        /**
+         * Constructs an {@code OpenLibraryDoc} of a book.
+         *
+         * @param title The title of the book.
+         * @param author The first author, or {@code null} if none is listed.
+         * @param firstPublishYear The year of first publication, or {@code 0} if unknown.
+         */
+        OpenLibraryDoc(String title, String author, int firstPublishYear) {
+            this.title = title;
+            this.author_name = author == null ? null : new String[] {author};
+            this.first_publish_year = firstPublishYear;
+        } // OpenLibraryDoc
+
+        /**
+         * Gets the title of the book.
+         * @return The title of the book.
+         */
+        public String getTitle() {
+            return title;
+        } // getTitle
+
+        /**
+         * Gets the first listed author of the book.
+         * @return The first author, or {@code null} if none is listed.
+         */
+        public String getAuthor() {
+            return author_name == null || author_name.length == 0 ? null : author_name[0];
+        } // getAuthor
+
+        /**
+         * Gets the year the book was first published.
+         * @return The year of first publication, or {@code 0} if unknown.
+         */
+        public int getFirstPublishYear() {
+            return first_publish_year;
+        } // getFirstPublishYear
     } // OpenLibraryDoc
 
     /**
      * Represents an Open Library Search API result.
      */
-    private static class OpenLibraryResult {
+    public static class OpenLibraryResult {
         int numFound;
         OpenLibraryDoc[] docs;
+
+        /**
+         * Constructs an empty {@code OpenLibraryResult}, to be filled in by {@code Gson}.
+         */
+        OpenLibraryResult() {
+        } // OpenLibraryResult
+
+        /**
+         * Constructs an {@code OpenLibraryResult} of the given documents.
+         *
+         * @param docs The documents found.
+         */
+        OpenLibraryResult(OpenLibraryDoc[] docs) {
+            this.docs = docs;
+            this.numFound = docs.length;
+        } // OpenLibraryResult
+
+        /**
+         * Gets the documents found by the search.
+         * @return An array of the documents, possibly empty.
+         */
+        public OpenLibraryDoc[] getDocs() {
+            return docs == null ? new OpenLibraryDoc[0] : docs;
+        } // getDocs
     } // OpenLibraryResult
 
-    /** HTTP client. */
-    public static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
-        .version(HttpClient.Version.HTTP_2)           // uses HTTP protocol version 2 where possible
-        .followRedirects(HttpClient.Redirect.NORMAL)  // always redirects, except from HTTPS to HTTP
-        .build();                                     // builds and returns a HttpClient object
+    private static final OpenLibrarySearchApi INSTANCE = new OpenLibrarySearchApi();
 
-    /** Google {@code Gson} object for parsing JSON-formatted strings. */
-    public static Gson GSON = new GsonBuilder()
-        .setPrettyPrinting()                          // enable nice output when printing
-        .create();                                    // builds and returns a Gson object
+    private static final String ENDPOINT =
+        getConfig("openlibrary.endpoint", "https://openlibrary.org/search.json");
+    private static final int COOKBOOK_LIMIT = 5;
 
-    private static final String ENDPOINT = "https://openlibrary.org/search.json";
+    /**
+     * Constructs the {@code OpenLibrarySearchApi} source. Use {@link #provider()} to get
+     * the registered instance.
+     */
+    private OpenLibrarySearchApi() {
+        super(NAME, OpenLibraryResult.class, Duration.ofHours(1), RateLimiter.unlimited(), 0);
+    } // OpenLibrarySearchApi
 
+    /**
+     * Returns the instance of this source registered with the {@code ServiceLoader}.
+     *
+     * @return The {@code OpenLibrarySearchApi} source.
+     */
+    public static OpenLibrarySearchApi provider() {
+        return INSTANCE;
+    } // provider
+
+    /**
+     * Searches for cookbooks about hummus and prints what was found.
+     *
+     * @param args the command line arguments, which are ignored
+     */
     public static void main(String[] args) {
-        OpenLibrarySearchApi
-            .search("the lord of the rings")
+        System.out.println("Searching for: hummus");
+        System.out.println("This may take some time to download...");
+        OpenLibrarySearchApi.provider()
+            .fetch("hummus")
+            .join()
             .ifPresent(response -> example1(response));
     } // main
 
@@ -68,52 +153,39 @@ public class OpenLibrarySearchApi {
     private static void example1(OpenLibraryResult result) {
         // print what we found
         System.out.printf("numFound = %d\n", result.numFound);
-        for (OpenLibraryDoc doc: result.docs) {
-            System.out.println(doc.title);
+        for (OpenLibraryDoc doc: result.getDocs()) {
+            System.out.println(doc.getTitle());
         } // for
     } // example1
 
     /**
-     * Return an {@code Optional} describing the root element of the JSON
-     * response for a "search" query.
-     * @param q query string
-     * @return an {@code Optional} describing the root element of the response
+     * Builds a request for a small number of cookbooks related to the given dish. Only
+     * the fields shown in the UI are requested so the response stays small.
+     *
+     * @param dish the dish to find cookbooks for
+     * @return the request to the Open Library Search API
      */
-    public static Optional<OpenLibraryResult> search(String q) {
-        System.out.printf("Searching for: %s\n", q);
-        System.out.println("This may take some time to download...");
-        try {
-            String url =  String.format(
-                "%s?q=%s",
-                OpenLibrarySearchApi.ENDPOINT,
-                URLEncoder.encode(q, StandardCharsets.UTF_8));
-            String json = OpenLibrarySearchApi.fetchString(url);
-            OpenLibraryResult result = GSON.fromJson(json, OpenLibraryResult.class);
-            return Optional.<OpenLibraryResult>ofNullable(result);
-        } catch (IllegalArgumentException | IOException | InterruptedException e) {
-            return Optional.<OpenLibraryResult>empty();
-        } // try
-    } // search
+    @Override
+    protected HttpRequest buildRequest(String dish) {
+        String url = String.format(
+            "%s?q=%s&fields=title,author_name,first_publish_year&limit=%d",
+            OpenLibrarySearchApi.ENDPOINT,
+            URLEncoder.encode(dish + " subject:cooking", StandardCharsets.UTF_8),
+            COOKBOOK_LIMIT);
+        return HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .build();
+    } // buildRequest
 
     /**
-     * Returns the response body string data from a URI.
-     * @param uri location of desired content
-     * @return response body string
-     * @throws IOException if an I/O error occurs when sending or receiving
-     * @throws InterruptedException if the HTTP client's {@code send} method is
-     *    interrupted
+     * Cookbooks are only an extra, so a failed search is written to the {@link RequestTrace},
+     * next to the failed fetch it records, instead of interrupting the user with an alert.
+     *
+     * @param message the error message
      */
-    private static String fetchString(String uri) throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(uri))
-            .build();
-        HttpResponse<String> response = HTTP_CLIENT
-            .send(request, BodyHandlers.ofString());
-        final int statusCode = response.statusCode();
-        if (statusCode != 200) {
-            throw new IOException("response status code not 200:" + statusCode);
-        } // if
-        return response.body().trim();
-    } // fetchString
+    @Override
+    protected void onError(String message) {
+        RequestTrace.get().note(NAME + " search failed: " + message);
+    } // onError
 
 } // OpenLibrarySearchApi
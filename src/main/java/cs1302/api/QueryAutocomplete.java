@@ -0,0 +1,497 @@
+package cs1302.api;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Suggests searches from the local search history. Past successful queries and the labels
+ * of recipes seen in their results are kept in a compact prefix trie whose nodes remember
+ * the heaviest term below them, so the best completions of a prefix are found without
+ * visiting the whole subtree. A query that is not known can be matched to a known one
+ * within a small edit distance; it is only searched as the known one instead once it has
+ * already come back empty, so a new dish that happens to be close to a known one is still
+ * searched as typed.
+ * The trie is only touched by its own background thread, so no caller ever blocks on it,
+ * and it is kept between sessions in a small text file.
+ */
+public final class QueryAutocomplete {
+
+    /**
+     * One node of the trie. Children are kept in parallel arrays sorted by character.
+     */
+    private static final class Node {
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private String term;
+        private int weight;
+        private int best;
+
+        /**
+         * Gets the child reached by a character.
+         *
+         * @param c The character.
+         * @return The child, or {@code null} if there is none.
+         */
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        } // child
+
+        /**
+         * Gets the child reached by a character, adding it if there is none.
+         *
+         * @param c The character.
+         * @return The child.
+         */
+        Node childOrAdd(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            } // if
+            int at = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            newKeys[at] = c;
+            newChildren[at] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        } // childOrAdd
+    } // Node
+
+    /**
+     * A known term that a query was most likely meant to be.
+     */
+    public static final class Correction {
+        private final String term;
+        private final boolean automatic;
+
+        /**
+         * Constructs a {@code Correction}.
+         *
+         * @param term The known term.
+         * @param automatic Whether the term should be searched instead of the query.
+         */
+        Correction(String term, boolean automatic) {
+            this.term = term;
+            this.automatic = automatic;
+        } // Correction
+
+        /**
+         * Gets the known term the query was most likely meant to be.
+         * @return The corrected query.
+         */
+        public String getTerm() {
+            return term;
+        } // getTerm
+
+        /**
+         * Checks whether the term should be searched instead of the query, because the
+         * query has already found no recipes. Otherwise the term is only a suggestion.
+         *
+         * @return {@code true} if the correction replaces the query.
+         */
+        public boolean isAutomatic() {
+            return automatic;
+        } // isAutomatic
+    } // Correction
+
+    /**
+     * A node waiting to be expanded, or a term waiting to be suggested, during a best-first
+     * search for completions.
+     */
+    private static final class Candidate {
+        private final Node node;
+        private final boolean complete;
+        private final int priority;
+
+        /**
+         * Constructs a {@code Candidate}.
+         *
+         * @param node The node.
+         * @param complete Whether the node's own term is suggested rather than its subtree.
+         * @param priority The weight of the term, or the heaviest weight of the subtree.
+         */
+        Candidate(Node node, boolean complete, int priority) {
+            this.node = node;
+            this.complete = complete;
+            this.priority = priority;
+        } // Candidate
+    } // Candidate
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /** The weight a successful query adds to its term. */
+    private static final int QUERY_WEIGHT = 5;
+    /** The weight a seen recipe label adds to its term. */
+    private static final int LABEL_WEIGHT = 1;
+    /** The most terms kept in the history file, heaviest first. */
+    private static final int MAX_SAVED_TERMS = 5000;
+    /** The longest queries still corrected by a single edit only. */
+    private static final int SHORT_QUERY = 5;
+    private static final long SAVE_TIMEOUT_SECONDS = 2;
+
+    private final Path file;
+    private final Node root = new Node();
+    /** The term kept for each canonical key, so spellings of one query add to one term. */
+    private final Map<String, String> terms = new HashMap<>();
+    /** The canonical keys of the queries that found no recipes in this session. */
+    private final Set<String> empty = new HashSet<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "autocomplete");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a {@code QueryAutocomplete} and starts loading the history kept in the
+     * given file.
+     *
+     * @param file The file the history is kept in between sessions.
+     */
+    public QueryAutocomplete(Path file) {
+        this.file = file;
+        worker.execute(this::load);
+    } // QueryAutocomplete
+
+    /**
+     * Gets the file the history is kept in by default, {@code ~/.cs1302-api/history.tsv}.
+     * @return The path of the history file.
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".cs1302-api", "history.tsv");
+    } // defaultFile
+
+    /**
+     * Remembers a query that found recipes, as it was typed. A query with the same
+     * canonical key as a known term adds to that term instead, so every spelling of the
+     * query adds to one term.
+     *
+     * @param query The query.
+     */
+    public void recordQuery(String query) {
+        worker.execute(() -> {
+            String canonical = QueryCanonicalizer.canonicalize(query);
+            String term = terms.get(canonical);
+            empty.remove(canonical);
+            add(term == null ? query : term, QUERY_WEIGHT);
+        });
+    } // recordQuery
+
+    /**
+     * Remembers a query that found no recipes, so that it is corrected automatically the
+     * next time it is searched.
+     *
+     * @param query The query.
+     */
+    public void recordEmpty(String query) {
+        worker.execute(() -> empty.add(QueryCanonicalizer.canonicalize(query)));
+    } // recordEmpty
+
+    /**
+     * Remembers the label of a recipe that was found.
+     *
+     * @param label The recipe label.
+     */
+    public void recordLabel(String label) {
+        worker.execute(() -> add(label, LABEL_WEIGHT));
+    } // recordLabel
+
+    /**
+     * Finds the best known completions of a prefix, heaviest first. When fewer than
+     * {@code n} terms start with the prefix, the closest known term is added as well, so
+     * a misspelled prefix still finds what was meant.
+     *
+     * @param prefix The text typed so far.
+     * @param n The most completions to return.
+     * @return A future of the completions.
+     */
+    public CompletableFuture<List<String>> suggest(String prefix, int n) {
+        return CompletableFuture.supplyAsync(() -> {
+            String key = key(prefix);
+            List<String> found = key.isEmpty() ? new ArrayList<>() : complete(key, n);
+            if (found.size() < n) {
+                nearest(key).filter(term -> !found.contains(term)).ifPresent(found::add);
+            } // if
+            return found;
+        }, worker);
+    } // suggest
+
+    /**
+     * Finds the known term a query was most likely meant to be. A query that is itself
+     * known, or whose canonical form is known, is never corrected. The correction is
+     * automatic only if the query has already found no recipes in this session.
+     *
+     * @param query The query given by the user.
+     * @return A future of an Optional containing the correction.
+     */
+    public CompletableFuture<Optional<Correction>> correct(String query) {
+        return CompletableFuture.supplyAsync(() -> {
+            String key = key(query);
+            String canonical = QueryCanonicalizer.canonicalize(query);
+            if (isKnown(key) || terms.containsKey(canonical)) {
+                return Optional.<Correction>empty();
+            } // if
+            boolean automatic = empty.contains(canonical);
+            return nearest(key).map(term -> new Correction(term, automatic));
+        }, worker);
+    } // correct
+
+    /**
+     * Writes the history to its file, waiting briefly for earlier updates to be applied.
+     */
+    public void save() {
+        try {
+            worker.submit(this::write).get(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            e.printStackTrace();
+        } // try
+    } // save
+
+    /**
+     * Reduces a term to the form it is kept under.
+     *
+     * @param text The term.
+     * @return The lower case term with single spaces.
+     */
+    private static String key(String text) {
+        return QueryCanonicalizer.normalize(text);
+    } // key
+
+    /**
+     * Adds weight to a term, inserting it if it is new.
+     *
+     * @param text The term.
+     * @param weight The weight to add.
+     */
+    private void add(String text, int weight) {
+        String key = text == null ? "" : key(text);
+        if (key.isEmpty()) {
+            return;
+        } // if
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrAdd(key.charAt(i));
+        } // for
+        if (node.term == null) {
+            terms.putIfAbsent(QueryCanonicalizer.canonicalize(key), key);
+        } // if
+        node.term = key;
+        node.weight += weight;
+        int total = node.weight;
+        node = root;
+        root.best = Math.max(root.best, total);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            node.best = Math.max(node.best, total);
+        } // for
+    } // add
+
+    /**
+     * Gets the node reached by a key.
+     *
+     * @param key The key.
+     * @return The node, or {@code null} if no term starts with the key.
+     */
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        } // for
+        return node;
+    } // find
+
+    /**
+     * Checks whether a key is a known term.
+     *
+     * @param key The key.
+     * @return {@code true} if the key has been remembered.
+     */
+    private boolean isKnown(String key) {
+        Node node = find(key);
+        return node != null && node.term != null;
+    } // isKnown
+
+    /**
+     * Finds the heaviest {@code n} terms starting with a key, expanding the heaviest
+     * subtree first so only the nodes on the way to the answers are visited.
+     *
+     * @param key The key.
+     * @param n The most terms to return.
+     * @return The terms, heaviest first.
+     */
+    private List<String> complete(String key, int n) {
+        List<String> found = new ArrayList<>(n);
+        Node start = find(key);
+        if (start == null) {
+            return found;
+        } // if
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(
+            Comparator.comparingInt((Candidate candidate) -> candidate.priority).reversed());
+        queue.add(new Candidate(start, false, start.best));
+        while (!queue.isEmpty() && found.size() < n) {
+            Candidate next = queue.poll();
+            if (next.complete) {
+                found.add(next.node.term);
+                continue;
+            } // if
+            if (next.node.term != null) {
+                queue.add(new Candidate(next.node, true, next.node.weight));
+            } // if
+            for (Node child : next.node.children) {
+                queue.add(new Candidate(child, false, child.best));
+            } // for
+        } // while
+        return found;
+    } // complete
+
+    /**
+     * Finds the known term closest to a key by edit distance, at most one edit away for
+     * short keys and two for longer ones. Ties go to the heavier term.
+     *
+     * @param key The key.
+     * @return An Optional containing the closest term.
+     */
+    private Optional<String> nearest(String key) {
+        if (key.length() < 3) {
+            return Optional.empty();
+        } // if
+        int limit = key.length() <= SHORT_QUERY ? 1 : 2;
+        int[] firstRow = new int[key.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        } // for
+        Node[] best = new Node[1];
+        int[] bestDistance = {limit + 1};
+        for (int i = 0; i < root.keys.length; i++) {
+            search(root.children[i], root.keys[i], key, firstRow, limit, best, bestDistance);
+        } // for
+        return best[0] == null ? Optional.empty() : Optional.of(best[0].term);
+    } // nearest
+
+    /**
+     * Walks the trie computing one row of the Levenshtein table per node, abandoning any
+     * subtree whose row has no entry within the limit.
+     *
+     * @param node The node being visited.
+     * @param c The character leading to the node.
+     * @param key The key being corrected.
+     * @param previous The row of the node's parent.
+     * @param limit The largest edit distance accepted.
+     * @param best Holds the closest node found so far.
+     * @param bestDistance Holds the distance of the closest node found so far.
+     */
+    private static void search(
+        Node node,
+        char c,
+        String key,
+        int[] previous,
+        int limit,
+        Node[] best,
+        int[] bestDistance) {
+        int[] row = new int[previous.length];
+        row[0] = previous[0] + 1;
+        int smallest = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int substitution = previous[i - 1] + (key.charAt(i - 1) == c ? 0 : 1);
+            row[i] = Math.min(substitution, Math.min(row[i - 1], previous[i]) + 1);
+            smallest = Math.min(smallest, row[i]);
+        } // for
+        int distance = row[row.length - 1];
+        if (node.term != null && distance <= limit && (distance < bestDistance[0]
+            || distance == bestDistance[0] && node.weight > best[0].weight)) {
+            best[0] = node;
+            bestDistance[0] = distance;
+        } // if
+        if (smallest <= limit) {
+            for (int i = 0; i < node.keys.length; i++) {
+                search(node.children[i], node.keys[i], key, row, limit, best, bestDistance);
+            } // for
+        } // if
+    } // search
+
+    /**
+     * Loads the history file, one {@code weight<TAB>term} line per term.
+     */
+    private void load() {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    try {
+                        add(line.substring(tab + 1), Integer.parseInt(line.substring(0, tab)));
+                    } catch (NumberFormatException e) {
+                        // skip a damaged line and keep the rest of the history
+                    } // try
+                } // if
+            } // while
+        } catch (NoSuchFileException e) {
+            // no history yet
+        } catch (IOException e) {
+            e.printStackTrace();
+        } // try
+    } // load
+
+    /**
+     * Writes the heaviest terms to the history file.
+     *
+     * @return Nothing; declared so the write can be submitted as a {@code Callable}.
+     * @throws IOException if the file could not be written.
+     */
+    private Void write() throws IOException {
+        List<Node> terms = new ArrayList<>();
+        collect(root, terms);
+        terms.sort(Comparator.comparingInt((Node node) -> node.weight).reversed());
+        Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Node node : terms.subList(0, Math.min(MAX_SAVED_TERMS, terms.size()))) {
+                writer.write(node.weight + "\t" + node.term);
+                writer.newLine();
+            } // for
+        } // try
+        return null;
+    } // write
+
+    /**
+     * Collects every node of a subtree that holds a term.
+     *
+     * @param node The root of the subtree.
+     * @param terms The list the nodes are added to.
+     */
+    private static void collect(Node node, List<Node> terms) {
+        if (node.term != null) {
+            terms.add(node);
+        } // if
+        for (Node child : node.children) {
+            collect(child, terms);
+        } // for
+    } // collect
+} // QueryAutocomplete
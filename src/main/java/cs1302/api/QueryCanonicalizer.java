@@ -0,0 +1,193 @@
+package cs1302.api;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces search queries to a canonical key, so that queries such as {@code "Hummus"},
+ * {@code "hummus "} and {@code "hummus  recipes"} share one cache entry, one request in
+ * flight and one share of the rate limit. A query is folded to lower case in Unicode
+ * normalization form NFKC, split into words, stripped of words that do not change what is
+ * searched for (such as {@code "recipe"} or {@code "easy"}), stemmed to singular words and
+ * mapped through a small table of synonyms (such as {@code "aubergine"} for
+ * {@code "eggplant"}). The key only identifies a query and is never searched for; what is
+ * sent to the upstream is the query as typed, with only its case, Unicode form and
+ * spacing normalized by {@link #normalize(String)}.
+ */
+public final class QueryCanonicalizer {
+
+    /** The longest phrase, in words, looked up in the synonym table. */
+    private static final int LONGEST_SYNONYM = 3;
+    private static final Pattern APOSTROPHES = Pattern.compile("['’‘`]");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /** Words that do not change what a dish or cuisine query searches for. */
+    private static final Set<String> STOPWORDS = Set.of(
+        "a", "an", "the", "recipe", "recipes", "how", "to", "make", "easy", "best",
+        "homemade", "dish", "dishes", "cuisine");
+
+    /** Words whose final s is not a plural ending. */
+    private static final Set<String> INVARIANT = Set.of(
+        "fries", "greens", "grits", "molasses", "nachos", "oats", "swiss", "brussels");
+
+    /** Plurals that do not follow the usual endings. */
+    private static final Map<String, String> IRREGULAR = Map.of(
+        "quiches", "quiche", "leaves", "leaf", "loaves", "loaf", "halves", "half");
+
+    /** Phrases of singular words and the phrase they are searched as. */
+    private static final Map<String, String> SYNONYMS = Map.ofEntries(
+        Map.entry("aubergine", "eggplant"),
+        Map.entry("courgette", "zucchini"),
+        Map.entry("garbanzo", "chickpea"),
+        Map.entry("garbanzo bean", "chickpea"),
+        Map.entry("prawn", "shrimp"),
+        Map.entry("capsicum", "bell pepper"),
+        Map.entry("scallion", "green onion"),
+        Map.entry("spring onion", "green onion"),
+        Map.entry("chilli", "chili"),
+        Map.entry("chile", "chili"),
+        Map.entry("bbq", "barbecue"),
+        Map.entry("mac n cheese", "mac and cheese"),
+        Map.entry("mac cheese", "mac and cheese"),
+        Map.entry("macaroni and cheese", "mac and cheese"),
+        Map.entry("macaroni cheese", "mac and cheese"),
+        Map.entry("spag bol", "spaghetti bolognese"),
+        Map.entry("yoghurt", "yogurt"),
+        Map.entry("donut", "doughnut"));
+
+    /**
+     * Not instantiable.
+     */
+    private QueryCanonicalizer() {
+    } // QueryCanonicalizer
+
+    /**
+     * Normalizes the case, Unicode form and spacing of a query, leaving its words as they
+     * were typed. This is the form a query is searched for and shown in.
+     *
+     * @param query The query as given by the user, or {@code null}.
+     * @return The query in lower case, in normalization form NFKC, with single spaces
+     *     between its words; never {@code null}.
+     */
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        } // if
+        String folded =
+            Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return SPACES.matcher(folded).replaceAll(" ").trim();
+    } // normalize
+
+    /**
+     * Returns the canonical key of a query. Queries that search for the same thing have
+     * the same key, and canonicalizing a key leaves it unchanged. The key is meant for
+     * comparing queries only; it is not always a good search, since words such as
+     * {@code "cookies"} are stemmed.
+     *
+     * @param query The query as given by the user, or {@code null}.
+     * @return The canonical key, with single spaces between its words; never
+     *     {@code null}, and only empty if the query has no letters or digits.
+     */
+    public static String canonicalize(String query) {
+        List<String> words = words(query);
+        List<String> kept = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (!STOPWORDS.contains(word)) {
+                kept.add(singular(word));
+            } // if
+        } // for
+        if (kept.isEmpty()) {
+            // a query of nothing but stopwords, such as "the dish", is kept whole
+            return String.join(" ", words);
+        } // if
+        return SPACES.matcher(synonyms(kept)).replaceAll(" ").trim();
+    } // canonicalize
+
+    /**
+     * Splits a query into its words, folded to lower case. Apostrophes are dropped rather
+     * than splitting a word, so {@code "shepherd's"} stays one word.
+     *
+     * @param query The query, or {@code null}.
+     * @return The words of the query, in order.
+     */
+    private static List<String> words(String query) {
+        List<String> words = new ArrayList<>();
+        if (query == null) {
+            return words;
+        } // if
+        String folded =
+            Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        folded = APOSTROPHES.matcher(folded).replaceAll("");
+        for (String word : NON_WORD.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            } // if
+        } // for
+        return words;
+    } // words
+
+    /**
+     * Replaces every phrase found in the synonym table, longest phrases first.
+     *
+     * @param words The singular words of a query.
+     * @return The words joined by spaces, with their synonyms replaced.
+     */
+    private static String synonyms(List<String> words) {
+        StringBuilder replaced = new StringBuilder();
+        int i = 0;
+        while (i < words.size()) {
+            String phrase = null;
+            int length = Math.min(LONGEST_SYNONYM, words.size() - i);
+            for (; length > 0; length--) {
+                phrase = SYNONYMS.get(String.join(" ", words.subList(i, i + length)));
+                if (phrase != null) {
+                    break;
+                } // if
+            } // for
+            if (replaced.length() > 0) {
+                replaced.append(' ');
+            } // if
+            if (phrase != null) {
+                replaced.append(phrase);
+                i += length;
+            } else {
+                replaced.append(words.get(i));
+                i++;
+            } // if
+        } // while
+        return replaced.toString();
+    } // synonyms
+
+    /**
+     * Strips a simple English plural ending from a word. Endings that are rarely plural,
+     * such as those of {@code "hummus"}, {@code "couscous"}, {@code "texas"},
+     * {@code "christmas"} or {@code "carnitas"}, are kept,
+     * and only {@code "ries"} becomes {@code "ry"}, so {@code "berries"} becomes
+     * {@code "berry"} but {@code "cookies"} becomes {@code "cookie"}.
+     *
+     * @param word A lower case word.
+     * @return The word without its plural ending.
+     */
+    private static String singular(String word) {
+        if (INVARIANT.contains(word)) {
+            return word;
+        } else if (IRREGULAR.containsKey(word)) {
+            return IRREGULAR.get(word);
+        } else if (word.length() > 5 && word.endsWith("ries")) {
+            return word.substring(0, word.length() - 3) + "y";
+        } else if (word.length() > 4 && (word.endsWith("oes") || word.endsWith("ches")
+            || word.endsWith("shes"))) {
+            return word.substring(0, word.length() - 2);
+        } else if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")
+            && !word.endsWith("us") && !word.endsWith("is") && !word.endsWith("as")) {
+            return word.substring(0, word.length() - 1);
+        } // if
+        return word;
+    } // singular
+} // QueryCanonicalizer
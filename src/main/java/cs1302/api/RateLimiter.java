@@ -0,0 +1,90 @@
+package cs1302.api;
+
+import java.time.Duration;
+
+/**
+ * Counts upstream requests in fixed windows of time and refuses requests once the
+ * limit of the current window has been used.
+ */
+public class RateLimiter {
+
+    private final int limit;
+    private final long windowNanos;
+    private long windowStart;
+    private int used;
+
+    /**
+     * Constructs a {@code RateLimiter} allowing {@code limit} requests per window.
+     *
+     * @param limit The maximum number of requests in one window.
+     * @param window The length of a window.
+     */
+    public RateLimiter(int limit, Duration window) {
+        this.limit = limit;
+        this.windowNanos = window.toNanos();
+        this.windowStart = System.nanoTime();
+    } // RateLimiter
+
+    /**
+     * Creates a {@code RateLimiter} that never refuses a request.
+     *
+     * @return An unlimited rate limiter.
+     */
+    public static RateLimiter unlimited() {
+        return new RateLimiter(Integer.MAX_VALUE, Duration.ofDays(1));
+    } // unlimited
+
+    /**
+     * Uses one request of the current window if any are left.
+     *
+     * @return {@code true} if the request may be sent.
+     */
+    public synchronized boolean tryAcquire() {
+        return tryAcquireSpare(0);
+    } // tryAcquire
+
+    /**
+     * Uses one request of the current window, but only if at least {@code reserve}
+     * requests are still left afterwards. Background work uses this to leave
+     * headroom for the user's own searches.
+     *
+     * @param reserve The number of requests that must remain available.
+     * @return {@code true} if the request may be sent.
+     */
+    public synchronized boolean tryAcquireSpare(int reserve) {
+        roll();
+        if (used + reserve < limit) {
+            used++;
+            return true;
+        } // if
+        return false;
+    } // tryAcquireSpare
+
+    /**
+     * Gets the number of requests used in the current window.
+     * @return The number of used requests.
+     */
+    public synchronized int getUsed() {
+        roll();
+        return used;
+    } // getUsed
+
+    /**
+     * Gets the maximum number of requests in one window.
+     * @return The limit.
+     */
+    public int getLimit() {
+        return limit;
+    } // getLimit
+
+    /**
+     * Starts a new window if the current one is over.
+     */
+    private void roll() {
+        long now = System.nanoTime();
+        if (now - windowStart >= windowNanos) {
+            windowStart = now;
+            used = 0;
+        } // if
+    } // roll
+} // RateLimiter
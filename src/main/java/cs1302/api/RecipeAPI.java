@@ -1,33 +1,60 @@
 package cs1302.api;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import java.util.Optional;
-import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import javafx.scene.control.Alert;
-import javafx.scene.control.Alert.AlertType;
-import javafx.application.Platform;
-import java.util.Properties;
-import java.io.FileInputStream;
 
 /**
- * Interacts with the Edamam Recipe API to search for recipes.
+ * Interacts with the Edamam Recipe API to search for recipes. Registered as the
+ * {@value #NAME} {@link ResultSource}; the query is the dish to search for.
  */
-public class RecipeAPI {
+public class RecipeAPI extends HttpResultSource<RecipeAPI.RecipeResponse> {
+
+    /** The name this source is registered under. */
+    public static final String NAME = "recipes";
 
     /**
      * Represents a response structure from the Edamam Recipe API.
      */
     public static class RecipeResponse {
         private List<Hit> hits;
+        /** The indices in the upstream's hits array of the hits kept; not part of the JSON. */
+        private transient int[] kept;
+
+        /**
+         * Constructs an empty {@code RecipeResponse}; used by {@code Gson}.
+         */
+        RecipeResponse() {
+        } // RecipeResponse
+
+        /**
+         * Constructs a {@code RecipeResponse} holding the given hits.
+         *
+         * @param hits The hits of the response.
+         */
+        RecipeResponse(List<Hit> hits) {
+            this.hits = hits;
+        } // RecipeResponse
 
         /**
          * Gets the number of hits containing recipe information.
@@ -128,115 +155,373 @@ public class RecipeAPI {
         } // Hit
     } // RecipeResponse
 
-    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
-        .version(HttpClient.Version.HTTP_2)
-        .followRedirects(HttpClient.Redirect.NORMAL)
-        .build();
+    /**
+     * The hits of a cached response, each decoded from its own segment of the compressed
+     * body the first time it is read. Hits that are never read are never inflated or
+     * parsed.
+     */
+    private static class LazyHits extends AbstractList<RecipeResponse.Hit> {
+        private final CompressedBody body;
+        private final AtomicReferenceArray<RecipeResponse.Hit> decoded;
+
+        /**
+         * Constructs a {@code LazyHits} over the segments of a cached body.
+         *
+         * @param body The cached body, with one segment per hit.
+         */
+        LazyHits(CompressedBody body) {
+            this.body = body;
+            this.decoded = new AtomicReferenceArray<>(body.getSegmentCount());
+        } // LazyHits
+
+        @Override
+        public RecipeResponse.Hit get(int index) {
+            RecipeResponse.Hit hit = decoded.get(index);
+            if (hit == null) {
+                JsonReader json = new JsonReader(new InputStreamReader(
+                    new ByteArrayInputStream(body.segment(index)), StandardCharsets.UTF_8));
+                hit = GSON.fromJson(json, RecipeResponse.Hit.class);
+                decoded.compareAndSet(index, null, hit);
+                hit = decoded.get(index);
+            } // if
+            return hit;
+        } // get
+
+        @Override
+        public int size() {
+            return decoded.length();
+        } // size
+    } // LazyHits
 
-    private static Gson GSON = new GsonBuilder()
-        .setPrettyPrinting()
-        .create();
+    private static final RecipeAPI INSTANCE = new RecipeAPI();
 
     private static final int MAX_REQUESTS_PER_MINUTE = 9;
-    private static int recipeApiRequests = 0;
-    private static boolean rateLimitReached = false;
 
-    private static String configPath = "resources/config.properties";
+    private static final String API_KEY = getConfig("recipeapi.apikey");
+    private static final String SEARCH_ENDPOINT =
+        getConfig("recipeapi.endpoint", "https://api.edamam.com/api/recipes/v2");
+    private static final String CALORIES_SEPARATOR = "\ncalories=";
+    private static final byte[] HITS_NAME = "hits".getBytes(StandardCharsets.US_ASCII);
+    private static final String WARM_UP_SAMPLE = "{\"from\":1,\"to\":1,\"hits\":[{\"recipe\":"
+        + "{\"label\":\"Hummus\",\"url\":\"https://example.com\",\"yield\":4.0,"
+        + "\"calories\":800.0,\"cuisineType\":[\"mediterranean\"],"
+        + "\"ingredients\":[{\"text\":\"1 cup chickpeas\"}]}}]}";
+
+    /**
+     * Constructs the {@code RecipeAPI} source. Use {@link #provider()} to get the
+     * registered instance.
+     */
+    private RecipeAPI() {
+        super(NAME, RecipeResponse.class, Duration.ofMinutes(10),
+            new RateLimiter(MAX_REQUESTS_PER_MINUTE, Duration.ofMinutes(1)), 1);
+    } // RecipeAPI
 
-    private static String API_KEY;
-    private static final String SEARCH_ENDPOINT = "https://api.edamam.com/api/recipes/v2";
-    private static int statusCode;
+    /**
+     * Returns the instance of this source registered with the {@code ServiceLoader}.
+     *
+     * @return The {@code RecipeAPI} source.
+     */
+    public static RecipeAPI provider() {
+        return INSTANCE;
+    } // provider
 
     /**
-     * Searches for recipes based on the provided dish. It creates a url based on given
-     * information and uses an HTTP_CLIENT to send a request to the Edamam Recipe API.
+     * Returns the query for the recipes of a dish whose total calories fall in a band.
+     * Such a query is fetched and cached like any other.
      *
      * @param dish A dish given by the user to search recipes on.
-     * @return An Optional containing the RecipeResponse if successful, empty otherwise.
+     * @param band The calorie band in Edamam's format, such as {@code "500-1000"} or
+     *     {@code "4000+"}.
+     * @return The query for the band.
      */
-    public static Optional<RecipeAPI.RecipeResponse> searchRecipes(String dish) {
-        try {
-            try (FileInputStream configFileStream = new FileInputStream(configPath)) {
-                Properties config = new Properties();
-                config.load(configFileStream);
-                API_KEY = config.getProperty("recipeapi.apikey");
-            } catch (IOException e) {
-                e.printStackTrace();
-            } // try
+    public static String calorieBandQuery(String dish, String band) {
+        return dish + CALORIES_SEPARATOR + band;
+    } // calorieBandQuery
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Only the dish of a {@link #calorieBandQuery(String, String)} is canonicalized; its
+     * calorie band is kept as it is.
+     */
+    @Override
+    protected String canonicalize(String query) {
+        return mapDish(query, QueryCanonicalizer::canonicalize);
+    } // canonicalize
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Only the dish of a {@link #calorieBandQuery(String, String)} is normalized; its
+     * calorie band is kept as it is.
+     */
+    @Override
+    protected String normalize(String query) {
+        return mapDish(query, QueryCanonicalizer::normalize);
+    } // normalize
+
+    /**
+     * Applies a function to the dish of a query, leaving the calorie band of a
+     * {@link #calorieBandQuery(String, String)} untouched.
+     *
+     * @param query The query.
+     * @param function The function applied to the dish.
+     * @return The query with its dish replaced by the result of the function.
+     */
+    private static String mapDish(String query, UnaryOperator<String> function) {
+        int band = query.indexOf(CALORIES_SEPARATOR);
+        if (band < 0) {
+            return function.apply(query);
+        } // if
+        return function.apply(query.substring(0, band)) + query.substring(band);
+    } // mapDish
+
+    /**
+     * Builds the search request for the provided dish, limited to a calorie band if the
+     * query was made by {@link #calorieBandQuery(String, String)}.
+     *
+     * @param query A dish given by the user to search recipes on.
+     * @return The request to the Edamam Recipe API.
+     */
+    @Override
+    protected HttpRequest buildRequest(String query) {
+        String dish = query;
+        String calories = "";
+        int band = query.indexOf(CALORIES_SEPARATOR);
+        if (band >= 0) {
+            dish = query.substring(0, band);
+            calories = "&calories=" + URLEncoder.encode(
+                query.substring(band + CALORIES_SEPARATOR.length()), StandardCharsets.UTF_8);
+        } // if
+        String url = String.format("%s?type=public&q=%s&app_id=aebf2db0&app_key=%s%s",
+            SEARCH_ENDPOINT,
+            URLEncoder.encode(dish, StandardCharsets.UTF_8),
+            API_KEY,
+            calories);
+
+        return HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .build();
+    } // buildRequest
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Every hit is published to the listener, as a response holding only that hit, as
+     * soon as its bytes have arrived, instead of waiting for the whole page to download.
+     * Hits served from the cache, or from an identical search that was already in flight,
+     * are not published; they are only in the response, where cached hits are decoded one
+     * by one as they are read.
+     */
+    @Override
+    public CompletableFuture<Optional<RecipeResponse>> fetch(
+        String dish,
+        FetchListener<RecipeResponse> listener) {
+        return fetch(dish,
+            reader -> decodeHits(reader, hit -> listener.onPart(new RecipeResponse(List.of(hit)))),
+            listener);
+    } // fetch
+
+    /**
+     * Finds the hits of a response body that were kept when it was decoded, so that the
+     * cache keeps every one of them in a segment of its own and leaves the near-duplicates
+     * out. The body is scanned for the elements of its top-level {@code "hits"} array
+     * without being decoded again.
+     *
+     * @param body The UTF-8 bytes of the response body.
+     * @param decoded The response decoded from the body, or {@code null} if it was not
+     *     decoded.
+     * @return The start and end offsets of the kept hits, or none if the body was not
+     *     decoded or has no hits array of objects.
+     */
+    @Override
+    protected int[] segment(byte[] body, RecipeResponse decoded) {
+        if (decoded == null || decoded.kept == null) {
+            return new int[0];
+        } // if
+        int[] all = hitBounds(body);
+        int[] bounds = new int[decoded.kept.length * 2];
+        for (int i = 0; i < decoded.kept.length; i++) {
+            int hit = decoded.kept[i];
+            if (2 * hit + 1 >= all.length) {
+                return new int[0];
+            } // if
+            bounds[2 * i] = all[2 * hit];
+            bounds[2 * i + 1] = all[2 * hit + 1];
+        } // for
+        return bounds;
+    } // segment
 
-            if (!checkRecipeRateLimit()) {
-                String url = String.format("%s?type=public&q=%s&app_id=aebf2db0&app_key=%s",
-                    SEARCH_ENDPOINT,
-                    URLEncoder.encode(dish, StandardCharsets.UTF_8),
-                    API_KEY);
-
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .build();
-
-                HttpResponse<String> response = HTTP_CLIENT
-                    .send(request, HttpResponse.BodyHandlers.ofString());
-
-                recipeApiRequests++;
-
-                statusCode = response.statusCode();
-                if (statusCode == 200) {
-                    String body = response.body();
-                    RecipeResponse result = GSON.fromJson(body, RecipeResponse.class);
-                    return Optional.ofNullable(result);
-                } else {
-                    throw new IOException("Response status code not 200:"
-                        + statusCode);
+    /**
+     * Finds the start and end offsets of every element of the top-level {@code "hits"}
+     * array of a response body by scanning its bytes.
+     *
+     * @param body The UTF-8 bytes of the response body.
+     * @return The start and end offsets of every hit, or none if the body has no hits
+     *     array of objects.
+     */
+    private static int[] hitBounds(byte[] body) {
+        int[] bounds = new int[32];
+        int count = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int keyStart = -1;
+        boolean hitsName = false;
+        boolean hitsKey = false;
+        boolean inHits = false;
+        boolean expectHit = false;
+        for (int i = 0; i < body.length; i++) {
+            byte b = body[i];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                    hitsName = depth == 1 && i - keyStart == HITS_NAME.length
+                        && Arrays.equals(body, keyStart, i, HITS_NAME, 0, HITS_NAME.length);
                 } // if
-            } else {
-                recipeApiRequests = 0;
+                continue;
             } // if
-        } catch (IOException | InterruptedException e) {
-            Platform.runLater(() -> showAlert(e.getMessage() + ": " + statusCode));
-        } // try
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                continue;
+            } // if
+            if (inHits && depth == 2 && expectHit && b != ']') {
+                if (b != '{') {
+                    return new int[0];
+                } // if
+                if (count + 2 > bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                } // if
+                bounds[count] = i;
+                count += 2;
+                expectHit = false;
+            } // if
+            if (b == '"') {
+                inString = true;
+                keyStart = i + 1;
+            } else if (b == ':') {
+                hitsKey = depth == 1 && hitsName;
+            } else if (b == ',') {
+                hitsName = false;
+                hitsKey = false;
+                expectHit = inHits && depth == 2;
+            } else if (b == '{' || b == '[') {
+                if (depth == 1 && b == '[' && hitsKey) {
+                    inHits = true;
+                    expectHit = true;
+                } // if
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (inHits && depth == 2) {
+                    bounds[count - 1] = i + 1;
+                } else if (inHits && depth == 1) {
+                    return Arrays.copyOf(bounds, count);
+                } // if
+            } // if
+        } // for
+        return new int[0];
+    } // hitBounds
 
-        return Optional.empty();
-    } // searchRecipes
+    /**
+     * Decodes a whole recipe response through the same path as a streaming search, so
+     * near-duplicate hits are dropped from it too.
+     *
+     * @param reader The JSON text of the response body.
+     * @return The decoded response.
+     * @throws IOException if the stream could not be read.
+     */
+    @Override
+    protected RecipeResponse decode(Reader reader) throws IOException {
+        return decodeHits(reader, hit -> { });
+    } // decode
 
     /**
-     * Checks whether or not the number of api requests exceeds the max amount of requests
-     * per minute. If the max amount of hits has been reached, the alert will pop up
-     * to inform the user of an intentional delay. It will change the rateLimitReached
-     * value to true.
+     * Serves a cached response whose hits are decoded only once they are read. A body
+     * without hits, or one refreshed by a revalidation, is decoded whole; its hits are not
+     * published to a streaming search either way.
      *
-     * @return Will return {@code true} if the max requests per minute has been reached and
-     * {@code false} if it hasn't.
-     */
-    private static boolean checkRecipeRateLimit() {
-        if (recipeApiRequests >= MAX_REQUESTS_PER_MINUTE) {
-            Platform.runLater(
-                () -> showAlert("Intentional delay due to Edamam's rate limits. "
-                    + "Please wait a minute."));
-            return rateLimitReached = true;
+     * @param body The cached body.
+     * @param decoder Decodes the response body.
+     * @return The response.
+     * @throws IOException if the body could not be read.
+     */
+    @Override
+    protected RecipeResponse decodeCached(CompressedBody body, BodyDecoder<RecipeResponse> decoder)
+        throws IOException {
+        if (body.getSegmentCount() == 0) {
+            try (Reader reader = body.reader()) {
+                return decode(reader);
+            } // try
         } // if
-        return rateLimitReached = false;
-    } // checkRecipeRateLimit
+        return new RecipeResponse(new LazyHits(body));
+    } // decodeCached
 
     /**
-     * Recieves the boolean value of the rateLimitReached variable.
-     *
-     * @return The boolean value of the {@code rateLimitReached} variable.
+     * Decodes a one-hit sample through the same streaming path as a real search.
      */
-    public static boolean getRateLimitReached() {
-        return rateLimitReached;
-    } // getRateLimitReached
+    @Override
+    protected void warmDecoder() {
+        try {
+            decodeHits(new StringReader(WARM_UP_SAMPLE), hit -> { });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } // try
+    } // warmDecoder
 
     /**
-     * Creates and initializes an alert variable which will be shown on the screen
-     * with the provided contents.
+     * Decodes a recipe response one hit at a time. Only the {@code "hits"} array is kept;
+     * every other member of the response is skipped without being decoded. Hits that are
+     * near-duplicates of an earlier hit, such as the same recipe on a mirror site, are
+     * dropped before they are published.
      *
-     * @param content The contents of the error message.
-     */
-    private static void showAlert(String content) {
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setHeaderText("Error");
-        alert.setTitle("Error");
-        alert.setContentText(content);
-        alert.showAndWait();
-    } // showAlert
+     * @param reader The JSON text of the response.
+     * @param onHit Called with each kept hit as soon as it has been decoded.
+     * @return The decoded response.
+     * @throws IOException if the stream could not be read.
+     */
+    private static RecipeResponse decodeHits(Reader reader, Consumer<RecipeResponse.Hit> onHit)
+        throws IOException {
+        JsonReader json = new JsonReader(reader);
+        List<RecipeResponse.Hit> hits = new ArrayList<>();
+        List<Integer> kept = new ArrayList<>();
+        NearDuplicateFilter<RecipeResponse.Hit> duplicates = NearDuplicateFilter.recipes();
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("hits") && json.peek() == JsonToken.BEGIN_ARRAY) {
+                json.beginArray();
+                for (int i = 0; json.hasNext(); i++) {
+                    RecipeResponse.Hit hit = GSON.fromJson(json, RecipeResponse.Hit.class);
+                    if (duplicates.accept(hit)) {
+                        hits.add(hit);
+                        kept.add(i);
+                        onHit.accept(hit);
+                    } // if
+                } // for
+                json.endArray();
+            } else {
+                json.skipValue();
+            } // if
+        } // while
+        json.endObject();
+        RecipeResponse response = new RecipeResponse(hits);
+        response.kept = kept.stream().mapToInt(Integer::intValue).toArray();
+        return response;
+    } // decodeHits
+
+    /**
+     * Informs the user of an intentional delay once the max amount of requests per
+     * minute has been reached.
+     */
+    @Override
+    protected void onRateLimited() {
+        showAlert(Alert.AlertType.ERROR, "Intentional delay due to Edamam's rate limits. "
+            + "Please wait a minute.");
+    } // onRateLimited
 } // RecipeAPI
@@ -0,0 +1,208 @@
+package cs1302.api;
+
+import java.util.AbstractList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The ready-to-display text of one recipe. Views are built off the JavaFX Application
+ * Thread as soon as a recipe hit has been decoded, so showing a recipe only binds these
+ * finished values to labels. Views of cached hits, which are decoded only when read, are
+ * built lazily instead, in the tab's lane just before each one is shown.
+ */
+public final class RecipeView {
+
+    /**
+     * The views of a list of hits, each built the first time it is read.
+     */
+    private static final class LazyViews extends AbstractList<RecipeView> {
+        private final List<RecipeAPI.RecipeResponse.Hit> hits;
+        private final AtomicReferenceArray<RecipeView> views;
+
+        /**
+         * Constructs a {@code LazyViews}.
+         *
+         * @param hits The recipe hits.
+         * @param prepared The views of the first hits, already built.
+         */
+        LazyViews(List<RecipeAPI.RecipeResponse.Hit> hits, List<RecipeView> prepared) {
+            this.hits = hits;
+            this.views = new AtomicReferenceArray<>(hits.size());
+            for (int i = 0; i < prepared.size() && i < hits.size(); i++) {
+                views.set(i, prepared.get(i));
+            } // for
+        } // LazyViews
+
+        @Override
+        public RecipeView get(int index) {
+            RecipeView view = views.get(index);
+            if (view == null) {
+                RecipeView built;
+                try {
+                    built = of(hits.get(index));
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    built = new RecipeView("This recipe could not be shown.", "", "", "",
+                        null);
+                } // try
+                views.compareAndSet(index, null, built);
+                view = views.get(index);
+            } // if
+            return view;
+        } // get
+
+        @Override
+        public int size() {
+            return views.length();
+        } // size
+
+        /**
+         * Checks whether the view at an index has been built.
+         *
+         * @param index The index of the view.
+         * @return {@code true} if reading the view does not build it.
+         */
+        boolean isBuilt(int index) {
+            return views.get(index) != null;
+        } // isBuilt
+    } // LazyViews
+
+    /** The most ingredients shown for one recipe. */
+    public static final int MAX_INGREDIENTS = 6;
+
+    private final String title;
+    private final String url;
+    private final String amount;
+    private final String ingredients;
+    private final String cuisine;
+
+    /**
+     * Constructs a {@code RecipeView}.
+     *
+     * @param title The title of the recipe.
+     * @param url The url link of the recipe.
+     * @param amount The formatted yield and calories.
+     * @param ingredients The formatted ingredients list.
+     * @param cuisine The main cuisine type, or {@code null} if unknown.
+     */
+    RecipeView(String title, String url, String amount, String ingredients,
+        String cuisine) {
+        this.title = title;
+        this.url = url;
+        this.amount = amount;
+        this.ingredients = ingredients;
+        this.cuisine = cuisine;
+    } // RecipeView
+
+    /**
+     * Builds the view of a recipe hit. The ingredients are listed once each, even when
+     * the recipe repeats one with a different case, spacing, quantity or plural, and no
+     * more than {@value #MAX_INGREDIENTS} are shown.
+     *
+     * @param hit The recipe hit.
+     * @return The view of the recipe.
+     */
+    public static RecipeView of(RecipeAPI.RecipeResponse.Hit hit) {
+        RecipeAPI.RecipeResponse.Hit.Recipe recipe = hit.getRecipe();
+        if (recipe == null) {
+            return new RecipeView("", "", "", "", null);
+        } // if
+
+        StringBuilder ingredients = new StringBuilder();
+        List<RecipeAPI.RecipeResponse.Hit.Recipe.Ingredient> ingredientsList =
+            recipe.getIngredients();
+        if (ingredientsList != null) {
+            Set<String> unique = new HashSet<>();
+            int shown = 0;
+            for (RecipeAPI.RecipeResponse.Hit.Recipe.Ingredient ingredient : ingredientsList) {
+                String text = ingredient.getText();
+                if (text == null || !unique.add(IngredientNormalizer.normalize(text))) {
+                    continue;
+                } // if
+                if (shown == MAX_INGREDIENTS) {
+                    ingredients.append("* Reduced Ingredients List. See full website.");
+                    break;
+                } // if
+                ingredients.append("* ").append(text).append('\n');
+                shown++;
+            } // for
+        } // if
+
+        String amount = "\nYield: " + (int) recipe.getYield()
+            + "\tCalories: " + (int) recipe.getCalories();
+        List<String> cuisines = recipe.getCuisineType();
+        String cuisine = cuisines == null || cuisines.isEmpty() ? null : cuisines.get(0);
+        return new RecipeView(
+            recipe.getLabel(), recipe.getUrl(), amount, ingredients.toString(), cuisine);
+    } // of
+
+    /**
+     * Returns the views of the given hits, building each view the first time it is read.
+     * The views already prepared are used for the first hits. A hit that cannot be decoded,
+     * such as one whose cached block is damaged, is shown as unavailable rather than
+     * failing whoever reads it.
+     *
+     * @param hits The recipe hits.
+     * @param prepared The views of the first hits, already built.
+     * @return The views of every hit, in order.
+     */
+    public static List<RecipeView> lazy(
+        List<RecipeAPI.RecipeResponse.Hit> hits,
+        List<RecipeView> prepared) {
+        return new LazyViews(hits, prepared);
+    } // lazy
+
+    /**
+     * Checks whether a view of a list has already been built, so that reading it costs
+     * nothing. Every view of a list not returned by {@link #lazy(List, List)} is built.
+     *
+     * @param views The views of a search.
+     * @param index The index of the view.
+     * @return {@code true} if reading the view does not build it.
+     */
+    public static boolean isBuilt(List<RecipeView> views, int index) {
+        return !(views instanceof LazyViews) || ((LazyViews) views).isBuilt(index);
+    } // isBuilt
+
+    /**
+     * Gets the title of the recipe.
+     * @return The title of the recipe.
+     */
+    public String getTitle() {
+        return title;
+    } // getTitle
+
+    /**
+     * Gets the url link of the recipe.
+     * @return The url of the recipe.
+     */
+    public String getUrl() {
+        return url;
+    } // getUrl
+
+    /**
+     * Gets the formatted yield and calories of the recipe.
+     * @return The yield and calories line.
+     */
+    public String getAmount() {
+        return amount;
+    } // getAmount
+
+    /**
+     * Gets the formatted ingredients list of the recipe.
+     * @return One line per ingredient.
+     */
+    public String getIngredients() {
+        return ingredients;
+    } // getIngredients
+
+    /**
+     * Gets the main cuisine type of the recipe.
+     * @return The cuisine type, or {@code null} if unknown.
+     */
+    public String getCuisine() {
+        return cuisine;
+    } // getCuisine
+} // RecipeView
@@ -0,0 +1,296 @@
+package cs1302.api;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpRequest;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A trace of every upstream call made by the result sources. Recording an event only
+ * publishes an immutable record into a slot of a ring buffer, without locks or I/O, so
+ * tracing never blocks a request or the JavaFX Application Thread. A background thread drains the
+ * ring into the {@value #LOGGER_NAME} {@link Logger}, which writes to
+ * {@code cs1302-api-trace.log} in the temporary directory unless logging has been
+ * configured otherwise. The most recent events can also be dumped on demand.
+ */
+public final class RequestTrace {
+
+    /**
+     * How a fetch was served.
+     */
+    public enum Outcome {
+        /** Served from a fresh cache entry. */
+        HIT,
+        /** Served from a stale cache entry while it is revalidated. */
+        STALE,
+        /** Sent to the upstream because nothing was cached. */
+        MISS,
+        /** Joined an identical fetch already in flight. */
+        COALESCED,
+        /** Refused because of the rate limit. */
+        RATE_LIMITED,
+        /** A revalidation answered {@code 304 Not Modified}. */
+        NOT_MODIFIED,
+        /** A revalidation replaced the cached body. */
+        REVALIDATED,
+        /** Failed. */
+        ERROR
+    } // Outcome
+
+    /**
+     * One recorded event. Events are immutable and published into the ring whole, so a
+     * reader sees either all of an event or none of it, even when writers lap the ring.
+     */
+    private static final class Event {
+        private final long sequence;
+        private final long timeMillis;
+        private final String source;
+        private final String query;
+        private final String endpoint;
+        private final int status;
+        private final long latencyNanos;
+        private final long bytes;
+        private final Outcome outcome;
+        private final int rateUsed;
+        private final int rateLimit;
+
+        /**
+         * Constructs an {@code Event} recorded at the current time.
+         *
+         * @param sequence The sequence of the event.
+         * @param source The name of the source.
+         * @param query The query that was fetched.
+         * @param endpoint The host and path of the upstream.
+         * @param status The HTTP status code, or {@code -1}.
+         * @param latencyNanos The time taken in nanoseconds.
+         * @param bytes The size of the body.
+         * @param outcome How the fetch was served.
+         * @param rateUsed The requests used in the current rate limit window, or {@code -1}.
+         * @param rateLimit The requests allowed in one rate limit window, or {@code -1}.
+         */
+        Event(
+            long sequence,
+            String source,
+            String query,
+            String endpoint,
+            int status,
+            long latencyNanos,
+            long bytes,
+            Outcome outcome,
+            int rateUsed,
+            int rateLimit) {
+            this.sequence = sequence;
+            this.timeMillis = System.currentTimeMillis();
+            this.source = source;
+            this.query = query;
+            this.endpoint = endpoint;
+            this.status = status;
+            this.latencyNanos = latencyNanos;
+            this.bytes = bytes;
+            this.outcome = outcome;
+            this.rateUsed = rateUsed;
+            this.rateLimit = rateLimit;
+        } // Event
+    } // Event
+
+    /** The name of the logger the trace is written to. */
+    public static final String LOGGER_NAME = "cs1302.api.trace";
+
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final long DRAIN_INTERVAL_MILLIS = 250;
+    private static final RequestTrace INSTANCE = new RequestTrace();
+
+    private final AtomicReferenceArray<Event> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong next = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Logger logger = Logger.getLogger(LOGGER_NAME);
+    private long drained;
+
+    /**
+     * Constructs the trace and starts its writer thread.
+     */
+    private RequestTrace() {
+        if (logger.getHandlers().length == 0) {
+            try {
+                FileHandler file = new FileHandler("%t/cs1302-api-trace.log", true);
+                file.setFormatter(new SimpleFormatter());
+                logger.addHandler(file);
+                logger.setUseParentHandlers(false);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } // try
+        } // if
+        Thread writer = new Thread(this::drainForever, "trace-writer");
+        writer.setDaemon(true);
+        writer.start();
+    } // RequestTrace
+
+    /**
+     * Gets the trace shared by every source.
+     * @return The request trace.
+     */
+    public static RequestTrace get() {
+        return INSTANCE;
+    } // get
+
+    /**
+     * Gets the endpoint of a request as traced: its host and path, leaving out the query
+     * string so API keys never reach the trace.
+     *
+     * @param request The request.
+     * @return The host and path of the request.
+     */
+    public static String endpointOf(HttpRequest request) {
+        return request.uri().getHost() + request.uri().getPath();
+    } // endpointOf
+
+    /**
+     * Records one event. Never blocks; if the writer falls a whole ring behind, the
+     * oldest unwritten events are dropped and counted.
+     *
+     * @param source The name of the source.
+     * @param query The query that was fetched.
+     * @param endpoint The host and path of the upstream, without any query string.
+     * @param status The HTTP status code, or {@code -1} if no response was received.
+     * @param latencyNanos The time taken in nanoseconds.
+     * @param bytes The size of the body.
+     * @param outcome How the fetch was served.
+     * @param rateUsed The requests used in the current rate limit window, or {@code -1}.
+     * @param rateLimit The requests allowed in one rate limit window, or {@code -1}.
+     */
+    public void record(
+        String source,
+        String query,
+        String endpoint,
+        int status,
+        long latencyNanos,
+        long bytes,
+        Outcome outcome,
+        int rateUsed,
+        int rateLimit) {
+        long sequence = next.getAndIncrement();
+        slots.set((int) (sequence & MASK), new Event(sequence, source, query, endpoint,
+            status, latencyNanos, bytes, outcome, rateUsed, rateLimit));
+    } // record
+
+    /**
+     * Prints the most recent events still held by the ring, oldest first.
+     *
+     * @param out The stream to print to.
+     */
+    public void dump(PrintStream out) {
+        long end = next.get();
+        long start = Math.max(0, end - CAPACITY);
+        out.printf("request trace: %d events, %d dropped by the writer%n", end, dropped.sum());
+        for (long sequence = start; sequence < end; sequence++) {
+            String line = read(sequence);
+            if (line != null) {
+                out.println(line);
+            } // if
+        } // for
+    } // dump
+
+    /**
+     * Writes a line that is not an upstream call, such as the counters of a source when
+     * the application exits, to the logger after every event recorded so far.
+     *
+     * @param line The line to write.
+     */
+    public synchronized void note(String line) {
+        drain();
+        logger.info(line);
+    } // note
+
+    /**
+     * Writes every event recorded so far to the logger without waiting for the writer
+     * thread, such as when the application exits.
+     */
+    public void flush() {
+        drain();
+        for (Handler handler : logger.getHandlers()) {
+            handler.flush();
+        } // for
+    } // flush
+
+    /**
+     * Drains the ring into the logger until the application exits.
+     */
+    private void drainForever() {
+        while (true) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(DRAIN_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            } // try
+            drain();
+        } // while
+    } // drainForever
+
+    /**
+     * Writes every event recorded since the last drain.
+     */
+    private synchronized void drain() {
+        long end = next.get();
+        if (end - drained > CAPACITY) {
+            dropped.add(end - drained - CAPACITY);
+            drained = end - CAPACITY;
+        } // if
+        while (drained < end) {
+            Event event = slots.get((int) (drained & MASK));
+            if (event == null || event.sequence < drained) {
+                return; // still being written; try again on the next drain
+            } // if
+            String line = event.sequence == drained ? format(event) : null;
+            if (line == null) {
+                dropped.increment();
+            } else if (logger.isLoggable(Level.INFO)) {
+                LogRecord record = new LogRecord(Level.INFO, line);
+                record.setLoggerName(LOGGER_NAME);
+                logger.log(record);
+            } // if
+            drained++;
+        } // while
+    } // drain
+
+    /**
+     * Formats the event with the given sequence.
+     *
+     * @param sequence The sequence of the event.
+     * @return The formatted event, or {@code null} if its slot has since been reused.
+     */
+    private String read(long sequence) {
+        Event event = slots.get((int) (sequence & MASK));
+        return event != null && event.sequence == sequence ? format(event) : null;
+    } // read
+
+    /**
+     * Formats an event as one line of the trace.
+     *
+     * @param event The event.
+     * @return The formatted event.
+     */
+    private static String format(Event event) {
+        return String.format(
+            "%s %-9s %-12s status=%-3s %7.1f ms %8d B rate=%s query=\"%s\" endpoint=%s",
+            Instant.ofEpochMilli(event.timeMillis),
+            event.source,
+            event.outcome,
+            event.status < 0 ? "-" : String.valueOf(event.status),
+            event.latencyNanos / 1e6,
+            event.bytes,
+            event.rateLimit < 0 ? "-" : event.rateUsed + "/" + event.rateLimit,
+            event.query,
+            event.endpoint);
+    } // format
+} // RequestTrace
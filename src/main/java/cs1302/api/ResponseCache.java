@@ -0,0 +1,248 @@
+package cs1302.api;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * A small in-memory cache of upstream response bodies. Bodies are kept deflate-compressed
+ * as a {@link CompressedBody}, split into the segments the source marks in them, so many
+ * more responses fit in the same heap and a source can decode parts of a body without
+ * inflating the rest. Each entry keeps the
+ * {@code ETag} and {@code Last-Modified} validators sent by the upstream (when present)
+ * so that expired entries can be refreshed with a conditional request. Expired entries
+ * are still served immediately while the refresh runs in the background
+ * (stale-while-revalidate), so cache expiry never adds latency to a user's request, but
+ * only for a bounded time: an entry that has stayed stale for longer than its max-stale
+ * age, because every refresh was refused or failed, is dropped and counts as a miss.
+ * Refreshes wait for the source's {@link ConcurrencyLimiter} like any other request.
+ */
+public class ResponseCache {
+
+    /** How long a refresh waits for a permit if its request has no timeout of its own. */
+    private static final Duration PERMIT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * A cached response body along with the validators used to revalidate it.
+     */
+    private static class Entry {
+        private final CompressedBody body;
+        private final String etag;
+        private final String lastModified;
+        private volatile long storedAt;
+
+        /**
+         * Constructs an {@code Entry} stored at the current time.
+         *
+         * @param body The compressed response body.
+         * @param etag The {@code ETag} header value, or {@code null}.
+         * @param lastModified The {@code Last-Modified} header value, or {@code null}.
+         */
+        Entry(CompressedBody body, String etag, String lastModified) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = System.nanoTime();
+        } // Entry
+    } // Entry
+
+    private final String name;
+    private final HttpClient client;
+    private final ConcurrencyLimiter concurrency;
+    private final long ttlNanos;
+    private final long maxStaleNanos;
+    private final Map<String, Entry> entries;
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final ExecutorService revalidator;
+    private final Function<byte[], int[]> segmenter;
+
+    /**
+     * Constructs a {@code ResponseCache} holding at most {@code maxEntries} responses,
+     * each considered fresh for {@code ttl} and served stale for at most {@code maxStale}
+     * after that.
+     *
+     * @param name The name of the source the responses belong to, as traced.
+     * @param client The client used to send requests.
+     * @param concurrency The limiter every request to the upstream waits for.
+     * @param ttl How long an entry is served without revalidation.
+     * @param maxStale How long an entry is still served once it has expired, while it is
+     *     being revalidated; an entry older than {@code ttl} plus {@code maxStale} is a miss.
+     * @param maxEntries The maximum number of entries kept before the least recently
+     *     used entry is evicted.
+     * @param segmenter Finds the boundaries of the segments of a body refreshed by a
+     *     revalidation, as taken by {@link CompressedBody#of(byte[], int[])}.
+     */
+    public ResponseCache(
+        String name,
+        HttpClient client,
+        ConcurrencyLimiter concurrency,
+        Duration ttl,
+        Duration maxStale,
+        int maxEntries,
+        Function<byte[], int[]> segmenter) {
+        this.name = name;
+        this.segmenter = segmenter;
+        this.client = client;
+        this.concurrency = concurrency;
+        this.ttlNanos = ttl.toNanos();
+        this.maxStaleNanos = maxStale.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            } // removeEldestEntry
+        };
+        this.revalidator = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "cache-revalidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    } // ResponseCache
+
+    /**
+     * Returns the cached body for the given key, fresh or stale. When the entry is stale
+     * and {@code permit} allows another upstream request, a conditional request is sent in
+     * the background to refresh it; the stale body is returned either way. An entry that is
+     * past its max-stale age is removed instead, and nothing is returned.
+     *
+     * @param key The cache key.
+     * @param request The request that originally produced the entry.
+     * @param permit Asked before a background revalidation is sent; returns {@code true}
+     *     if the upstream request may be made.
+     * @return An Optional containing the cached body, or empty if nothing is cached.
+     */
+    public Optional<CompressedBody> lookup(
+        String key,
+        HttpRequest request,
+        BooleanSupplier permit) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        } // synchronized
+        if (entry == null) {
+            return Optional.empty();
+        } // if
+        long age = System.nanoTime() - entry.storedAt;
+        if (age - ttlNanos > maxStaleNanos) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            } // synchronized
+            return Optional.empty();
+        } // if
+        boolean stale = age > ttlNanos;
+        RequestTrace.get().record(name, key, RequestTrace.endpointOf(request), -1, 0,
+            entry.body.size(), stale ? RequestTrace.Outcome.STALE : RequestTrace.Outcome.HIT,
+            -1, -1);
+        if (stale && revalidating.add(key)) {
+            revalidator.execute(() -> {
+                try {
+                    if (permit.getAsBoolean()) {
+                        revalidate(key, request, entry);
+                    } // if
+                } catch (IOException | InterruptedException | ExecutionException e) {
+                    // keep serving the stale entry; the next lookup will try again
+                } finally {
+                    revalidating.remove(key);
+                } // try
+            });
+        } // if
+        return Optional.of(entry.body);
+    } // lookup
+
+    /**
+     * Refreshes a stale entry. A conditional request is used when the entry has
+     * validators; a {@code 304 Not Modified} answer only renews the entry's timestamp. The
+     * refresh waits for a permit no longer than its request's timeout and is dropped if
+     * none comes, since the stale entry is still served, so a collapsed limit never holds
+     * up the refreshes of other entries.
+     *
+     * @param key The cache key.
+     * @param request The request that originally produced the entry.
+     * @param entry The stale entry.
+     * @throws IOException if an I/O error occurs when sending or receiving.
+     * @throws InterruptedException if the send is interrupted.
+     * @throws ExecutionException if no permit could be had from the limiter.
+     */
+    private void revalidate(String key, HttpRequest request, Entry entry)
+        throws IOException, InterruptedException, ExecutionException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+        if (entry.etag != null) {
+            builder.header("If-None-Match", entry.etag);
+        } // if
+        if (entry.lastModified != null) {
+            builder.header("If-Modified-Since", entry.lastModified);
+        } // if
+        CompletableFuture<ConcurrencyLimiter.Permit> turn = concurrency.acquire();
+        ConcurrencyLimiter.Permit permit;
+        try {
+            permit = turn.get(
+                request.timeout().orElse(PERMIT_TIMEOUT).toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!turn.cancel(false)) {
+                turn.join().release(ConcurrencyLimiter.Signal.IGNORED, 0);
+            } // if
+            return;
+        } // try
+        long start = System.nanoTime();
+        ConcurrencyLimiter.Signal signal = ConcurrencyLimiter.Signal.IGNORED;
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(builder.build(), BodyHandlers.ofByteArray());
+            signal = ConcurrencyLimiter.Signal.of(response.statusCode());
+        } catch (HttpTimeoutException e) {
+            signal = ConcurrencyLimiter.Signal.DROPPED;
+            throw e;
+        } finally {
+            permit.release(signal, System.nanoTime() - start);
+        } // try
+        RequestTrace.Outcome outcome = RequestTrace.Outcome.ERROR;
+        if (response.statusCode() == 304) {
+            entry.storedAt = System.nanoTime();
+            outcome = RequestTrace.Outcome.NOT_MODIFIED;
+        } else if (response.statusCode() == 200) {
+            store(key, response.body(), segmenter.apply(response.body()), response.headers());
+            outcome = RequestTrace.Outcome.REVALIDATED;
+        } // if
+        RequestTrace.get().record(name, key, RequestTrace.endpointOf(request),
+            response.statusCode(), System.nanoTime() - start, response.body().length,
+            outcome, -1, -1);
+    } // revalidate
+
+    /**
+     * Compresses and stores the body of a successful response along with the validators
+     * found in its headers.
+     *
+     * @param key The cache key.
+     * @param body The UTF-8 bytes of the response body.
+     * @param bounds The boundaries of the segments of the body, as taken by
+     *     {@link CompressedBody#of(byte[], int[])}.
+     * @param headers The response headers.
+     */
+    public void store(String key, byte[] body, int[] bounds, HttpHeaders headers) {
+        Entry entry = new Entry(
+            CompressedBody.of(body, bounds),
+            headers.firstValue("ETag").orElse(null),
+            headers.firstValue("Last-Modified").orElse(null));
+        synchronized (entries) {
+            entries.put(key, entry);
+        } // synchronized
+    } // store
+} // ResponseCache
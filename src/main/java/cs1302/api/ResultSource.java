@@ -0,0 +1,110 @@
+package cs1302.api;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A source of results shown by the {@code ApiApp}, such as recipes, news articles or
+ * cookbooks. Sources are registered as services in {@code module-info.java} and are
+ * looked up by name through {@link ResultSources}.
+ *
+ * @param <T> The type of the response returned by the source.
+ */
+public interface ResultSource<T> {
+
+    /**
+     * Gets the name this source is registered under.
+     * @return The name of the source.
+     */
+    String getName();
+
+    /**
+     * Gets the type of the response returned by this source.
+     * @return The class of the response.
+     */
+    Class<T> getResponseType();
+
+    /**
+     * Fetches the results for the given query without blocking the caller. The returned
+     * future always completes normally; it is empty if the source failed or is currently
+     * rate limited.
+     *
+     * @param query The query to fetch results for.
+     * @return A future of an Optional containing the response.
+     */
+    CompletableFuture<Optional<T>> fetch(String query);
+
+    /**
+     * Fetches the results for the given query, telling the listener what happened to this
+     * fetch besides its response. Unlike {@link #isRateLimited()}, which describes the last
+     * fetch of any caller, the listener only hears about this one. A source that can decode
+     * its response as it downloads publishes the parts to the listener as they arrive. By
+     * default nothing is streamed, and the source's rate limit is checked once the plain
+     * fetch has completed empty.
+     *
+     * @param query The query to fetch results for.
+     * @param listener Told about this fetch before its future completes.
+     * @return A future of an Optional containing the response.
+     */
+    default CompletableFuture<Optional<T>> fetch(String query, FetchListener<T> listener) {
+        return fetch(query).thenApply(result -> {
+            if (result.isEmpty() && isRateLimited()) {
+                listener.onRateLimited();
+            } // if
+            return result;
+        });
+    } // fetch
+
+    /**
+     * Prepares the source for its first fetch in the background, such as by opening a
+     * connection to its upstream, without using any of its rate limit. Does nothing by
+     * default.
+     *
+     * @return A future that completes, always normally, once the source is ready.
+     */
+    default CompletableFuture<Void> warmUp() {
+        return CompletableFuture.completedFuture(null);
+    } // warmUp
+
+    /**
+     * Checks whether the last fetch was refused because of the source's rate limit.
+     *
+     * @return {@code true} if the source is currently rate limited.
+     */
+    default boolean isRateLimited() {
+        return false;
+    } // isRateLimited
+
+    /**
+     * Gets the counters describing the requests served by this source.
+     * @return The metrics of this source.
+     */
+    SourceMetrics getMetrics();
+
+    /**
+     * Hears what happened to one fetch besides its response.
+     *
+     * @param <T> The type of the response returned by the source.
+     */
+    @FunctionalInterface
+    interface FetchListener<T> {
+
+        /**
+         * Called, before the fetch completes empty, if its upstream request was refused
+         * because of the source's rate limit.
+         */
+        void onRateLimited();
+
+        /**
+         * Called, in order and from a background thread, with each part of the response as
+         * soon as it has been downloaded and decoded. A part is a response of its own that
+         * holds only the results that just arrived. Parts are only published while a
+         * response downloads, never for one served from the cache or shared with another
+         * fetch. Does nothing by default.
+         *
+         * @param part The part of the response that just arrived.
+         */
+        default void onPart(T part) {
+        } // onPart
+    } // FetchListener
+} // ResultSource
@@ -0,0 +1,63 @@
+package cs1302.api;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of every {@link ResultSource} provided to this module, loaded once with
+ * a {@link ServiceLoader}.
+ */
+public final class ResultSources {
+
+    private static final Map<String, ResultSource<?>> SOURCES = load();
+
+    /**
+     * Not instantiable.
+     */
+    private ResultSources() {
+    } // ResultSources
+
+    /**
+     * Gets the source registered under the given name.
+     *
+     * @param <T> The type of the response returned by the source.
+     * @param name The name of the source.
+     * @param responseType The type of the response returned by the source.
+     * @return The registered source.
+     * @throws NoSuchElementException if no source with that name and response type is
+     *     registered.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ResultSource<T> get(String name, Class<T> responseType) {
+        ResultSource<?> source = SOURCES.get(name);
+        if (source == null || source.getResponseType() != responseType) {
+            throw new NoSuchElementException("no result source: " + name);
+        } // if
+        return (ResultSource<T>) source;
+    } // get
+
+    /**
+     * Gets every registered source, in the order they were declared.
+     * @return An unmodifiable collection of the sources.
+     */
+    public static Collection<ResultSource<?>> all() {
+        return Collections.unmodifiableCollection(SOURCES.values());
+    } // all
+
+    /**
+     * Loads the registered sources.
+     *
+     * @return The sources by name.
+     */
+    private static Map<String, ResultSource<?>> load() {
+        Map<String, ResultSource<?>> sources = new LinkedHashMap<>();
+        for (ResultSource<?> source : ServiceLoader.load(ResultSource.class)) {
+            sources.put(source.getName(), source);
+        } // for
+        return sources;
+    } // load
+} // ResultSources
@@ -0,0 +1,259 @@
+package cs1302.api;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Queries the recipe, news and cookbook {@link ResultSource}s for a dish concurrently
+ * (scatter-gather). Every source has its own deadline and every search has an overall
+ * latency budget; a source that misses either simply contributes an empty result, so
+ * a search always completes with whatever arrived in time. The news query needs the
+ * cuisine of the first recipe, so it starts as soon as the first recipe hit has been
+ * decoded while the cookbook query runs alongside both.
+ */
+public class SearchAggregator {
+
+    /**
+     * One search in progress. Each part completes on its own so callers can show it as
+     * soon as it arrives; a part is empty if its source failed or ran out of time.
+     */
+    public static class Search {
+        private final CompletableFuture<Optional<RecipeAPI.RecipeResponse>> recipes;
+        private final CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> news;
+        private final CompletableFuture<Optional<String>> cuisine;
+        private final CompletableFuture<Optional<OpenLibrarySearchApi.OpenLibraryResult>>
+            cookbooks;
+        private final AtomicBoolean recipesRateLimited;
+        private final long budgetDeadline;
+
+        /**
+         * Constructs a {@code Search} from the parts being gathered.
+         *
+         * @param recipes The recipe results.
+         * @param news The news results.
+         * @param cuisine The cuisine the news is searched for.
+         * @param cookbooks The cookbook results.
+         * @param recipesRateLimited Set if the recipe request was refused by the rate limit.
+         * @param budgetDeadline The {@link System#nanoTime()} at which the search's budget
+         *     is spent.
+         */
+        Search(
+            CompletableFuture<Optional<RecipeAPI.RecipeResponse>> recipes,
+            CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> news,
+            CompletableFuture<Optional<String>> cuisine,
+            CompletableFuture<Optional<OpenLibrarySearchApi.OpenLibraryResult>> cookbooks,
+            AtomicBoolean recipesRateLimited,
+            long budgetDeadline) {
+            this.recipes = recipes;
+            this.news = news;
+            this.cuisine = cuisine;
+            this.cookbooks = cookbooks;
+            this.recipesRateLimited = recipesRateLimited;
+            this.budgetDeadline = budgetDeadline;
+        } // Search
+
+        /**
+         * Gets the recipe results.
+         * @return A future of an Optional containing the recipe response.
+         */
+        public CompletableFuture<Optional<RecipeAPI.RecipeResponse>> getRecipes() {
+            return recipes;
+        } // getRecipes
+
+        /**
+         * Gets the news results for the cuisine of the first recipe.
+         * @return A future of an Optional containing the news response.
+         */
+        public CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> getNews() {
+            return news;
+        } // getNews
+
+        /**
+         * Gets the cuisine the news of this search is searched for: that of the first
+         * recipe to arrive, or empty if it has none. Complete once the recipes are.
+         *
+         * @return A future of an Optional containing the cuisine.
+         */
+        public CompletableFuture<Optional<String>> getNewsCuisine() {
+            return cuisine;
+        } // getNewsCuisine
+
+        /**
+         * Gets the cookbook results.
+         * @return A future of an Optional containing the cookbook response.
+         */
+        public CompletableFuture<Optional<OpenLibrarySearchApi.OpenLibraryResult>>
+            getCookbooks() {
+            return cookbooks;
+        } // getCookbooks
+
+        /**
+         * Checks whether the recipes of this search were refused by the recipe source's
+         * rate limit, rather than found empty or late. Only this search's own request is
+         * considered, not the last request of another search. Known once the recipes have
+         * completed.
+         *
+         * @return {@code true} if the recipe request of this search was rate limited.
+         */
+        public boolean isRecipesRateLimited() {
+            return recipesRateLimited.get();
+        } // isRecipesRateLimited
+
+        /**
+         * Gets the time at which this search's budget is spent, so that work done on its
+         * results, such as ranking them, can stay within it.
+         *
+         * @return The {@link System#nanoTime()} at which the budget is spent.
+         */
+        public long getBudgetDeadline() {
+            return budgetDeadline;
+        } // getBudgetDeadline
+    } // Search
+
+    /** The longest a whole search may take; no upstream request is waited on longer. */
+    static final long SEARCH_BUDGET_MILLIS = 8000;
+    private static final long RECIPE_DEADLINE_MILLIS = 6000;
+    private static final long NEWS_DEADLINE_MILLIS = 4000;
+    private static final long COOKBOOK_DEADLINE_MILLIS = 5000;
+
+    private final ResultSource<RecipeAPI.RecipeResponse> recipeSource =
+        ResultSources.get(RecipeAPI.NAME, RecipeAPI.RecipeResponse.class);
+    private final ResultSource<NewsSourceAPI.NewsResponse> newsSource =
+        ResultSources.get(NewsSourceAPI.NAME, NewsSourceAPI.NewsResponse.class);
+    private final ResultSource<OpenLibrarySearchApi.OpenLibraryResult> cookbookSource =
+        ResultSources.get(
+            OpenLibrarySearchApi.NAME, OpenLibrarySearchApi.OpenLibraryResult.class);
+
+    /**
+     * Starts a search of every source for the given dish. Every part of the returned
+     * search completes normally, at the latest once the search's budget is spent.
+     *
+     * @param dish The dish given by the user.
+     * @return The search in progress.
+     */
+    public Search search(String dish) {
+        return search(dish, hit -> { });
+    } // search
+
+    /**
+     * Starts a search of every source for the given dish, publishing each recipe hit to
+     * {@code onHit} as soon as it has been downloaded and decoded; hits served from the
+     * cache are only in the response. Every part of the returned search
+     * completes normally, at the latest once the search's budget is spent.
+     *
+     * @param dish The dish given by the user.
+     * @param onHit Called with each recipe hit, in order, from a background thread.
+     * @return The search in progress.
+     */
+    public Search search(String dish, Consumer<RecipeAPI.RecipeResponse.Hit> onHit) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SEARCH_BUDGET_MILLIS);
+        CompletableFuture<Optional<String>> cuisine = new CompletableFuture<>();
+        Consumer<RecipeAPI.RecipeResponse.Hit> listener = hit -> {
+            if (!cuisine.isDone()) {
+                cuisine.complete(cuisineOf(hit));
+            } // if
+            onHit.accept(hit);
+        };
+
+        AtomicBoolean rateLimited = new AtomicBoolean();
+        ResultSource.FetchListener<RecipeAPI.RecipeResponse> parts =
+            new ResultSource.FetchListener<>() {
+                @Override
+                public void onRateLimited() {
+                    rateLimited.set(true);
+                } // onRateLimited
+
+                @Override
+                public void onPart(RecipeAPI.RecipeResponse part) {
+                    for (RecipeAPI.RecipeResponse.Hit hit : part.getHits()) {
+                        listener.accept(hit);
+                    } // for
+                } // onPart
+            };
+        CompletableFuture<Optional<RecipeAPI.RecipeResponse>> recipes =
+            bound(recipeSource.fetch(dish, parts), RECIPE_DEADLINE_MILLIS, deadline);
+        recipes.thenAccept(response -> cuisine.complete(response
+            .map(RecipeAPI.RecipeResponse::getHits)
+            .filter(hits -> !hits.isEmpty())
+            .flatMap(hits -> cuisineOf(hits.get(0)))));
+
+        CompletableFuture<Optional<OpenLibrarySearchApi.OpenLibraryResult>> cookbooks =
+            query(cookbookSource, dish, COOKBOOK_DEADLINE_MILLIS, deadline);
+        CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> news = cuisine
+            .thenCompose(first -> first
+                .map(type -> query(newsSource, type, NEWS_DEADLINE_MILLIS, deadline))
+                .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())));
+        return new Search(recipes, news, cuisine, cookbooks, rateLimited, deadline);
+    } // search
+
+    /**
+     * Fetches news articles about a cuisine on their own, such as when the user moves to
+     * another recipe, bounded by the news source's deadline.
+     *
+     * @param cuisine The cuisine type to search for.
+     * @return A future of an Optional containing the news response.
+     */
+    public CompletableFuture<Optional<NewsSourceAPI.NewsResponse>> searchNews(String cuisine) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NEWS_DEADLINE_MILLIS);
+        return query(newsSource, cuisine, NEWS_DEADLINE_MILLIS, deadline);
+    } // searchNews
+
+    /**
+     * Fetches a query from a source, bounded by the source's deadline and by whatever is
+     * left of the search's budget.
+     *
+     * @param <T> The type of the source's response.
+     * @param source The source to query.
+     * @param query The query to fetch.
+     * @param deadlineMillis The source's deadline in milliseconds.
+     * @param budgetDeadline The {@link System#nanoTime()} at which the search's budget
+     *     is spent.
+     * @return A future that completes with the result, or empty on failure or timeout.
+     */
+    private static <T> CompletableFuture<Optional<T>> query(
+        ResultSource<T> source,
+        String query,
+        long deadlineMillis,
+        long budgetDeadline) {
+        return bound(source.fetch(query), deadlineMillis, budgetDeadline);
+    } // query
+
+    /**
+     * Bounds a fetch by a source's deadline and by whatever is left of the search's budget.
+     *
+     * @param <T> The type of the source's response.
+     * @param fetch The fetch in progress.
+     * @param deadlineMillis The source's deadline in milliseconds.
+     * @param budgetDeadline The {@link System#nanoTime()} at which the search's budget
+     *     is spent.
+     * @return A future that completes with the result, or empty on timeout.
+     */
+    private static <T> CompletableFuture<Optional<T>> bound(
+        CompletableFuture<Optional<T>> fetch,
+        long deadlineMillis,
+        long budgetDeadline) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(budgetDeadline - System.nanoTime());
+        return fetch
+            .copy()
+            .completeOnTimeout(
+                Optional.empty(),
+                Math.max(0, Math.min(deadlineMillis, remaining)),
+                TimeUnit.MILLISECONDS);
+    } // bound
+
+    /**
+     * Gets the main cuisine type of the given recipe hit.
+     *
+     * @param hit The recipe hit.
+     * @return An Optional containing the cuisine type.
+     */
+    static Optional<String> cuisineOf(RecipeAPI.RecipeResponse.Hit hit) {
+        return Optional.ofNullable(hit.getRecipe())
+            .map(RecipeAPI.RecipeResponse.Hit.Recipe::getCuisineType)
+            .filter(cuisines -> !cuisines.isEmpty())
+            .map(cuisines -> cuisines.get(0));
+    } // cuisineOf
+} // SearchAggregator
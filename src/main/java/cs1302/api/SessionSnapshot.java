@@ -0,0 +1,275 @@
+package cs1302.api;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The state of the app's last search, kept between sessions so that reopening the app
+ * shows the same recipes, news and cookbooks at once without calling any API. The state
+ * is stored in a small binary file: a header, then every recipe view, article and
+ * cookbook as length-prefixed UTF-8 strings and plain integers. The file is read through
+ * a memory-mapped buffer, so restoring costs one mapping and no parsing beyond copying
+ * the strings out.
+ */
+public final class SessionSnapshot {
+
+    private static final int MAGIC = 0x43533133;
+    private static final short VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+    /** The fewest bytes a recipe view takes: five string lengths. */
+    private static final int MIN_VIEW_BYTES = 5 * Integer.BYTES;
+    /** The fewest bytes an article takes: three string lengths. */
+    private static final int MIN_ARTICLE_BYTES = 3 * Integer.BYTES;
+    /** The fewest bytes a cookbook takes: two string lengths and a year. */
+    private static final int MIN_DOC_BYTES = 3 * Integer.BYTES;
+
+    private final String term;
+    private final int currentIndex;
+    private final List<RecipeView> views;
+    private final Optional<NewsSourceAPI.NewsResponse> news;
+    private final Optional<OpenLibrarySearchApi.OpenLibraryResult> cookbooks;
+
+    /**
+     * Constructs a {@code SessionSnapshot}.
+     *
+     * @param term The dish that was searched.
+     * @param currentIndex The index of the recipe being shown.
+     * @param views The views of the recipes found.
+     * @param news The news shown for the current recipe.
+     * @param cookbooks The cookbooks found for the dish.
+     */
+    public SessionSnapshot(
+        String term,
+        int currentIndex,
+        List<RecipeView> views,
+        Optional<NewsSourceAPI.NewsResponse> news,
+        Optional<OpenLibrarySearchApi.OpenLibraryResult> cookbooks) {
+        this.term = term;
+        this.currentIndex = currentIndex;
+        this.views = List.copyOf(views);
+        this.news = news == null ? Optional.empty() : news;
+        this.cookbooks = cookbooks == null ? Optional.empty() : cookbooks;
+    } // SessionSnapshot
+
+    /**
+     * Gets the file the snapshot is kept in by default, {@code ~/.cs1302-api/session.bin}.
+     * @return The path of the snapshot file.
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".cs1302-api", "session.bin");
+    } // defaultFile
+
+    /**
+     * Writes the snapshot to a file, replacing any earlier snapshot only once the new one
+     * is complete.
+     *
+     * @param file The file to write.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path partial = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(partial)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            writeString(out, term);
+            out.writeInt(currentIndex);
+            out.writeInt(views.size());
+            for (RecipeView view : views) {
+                writeString(out, view.getTitle());
+                writeString(out, view.getUrl());
+                writeString(out, view.getAmount());
+                writeString(out, view.getIngredients());
+                writeString(out, view.getCuisine());
+            } // for
+
+            List<NewsSourceAPI.NewsResponse.Article> articles = news
+                .map(NewsSourceAPI.NewsResponse::getArticles)
+                .orElse(null);
+            out.writeInt(articles == null ? NULL_LENGTH : articles.size());
+            for (int i = 0; articles != null && i < articles.size(); i++) {
+                writeString(out, articles.get(i).getTitle());
+                writeString(out, articles.get(i).getUrl());
+                writeString(out, articles.get(i).getContent());
+            } // for
+
+            OpenLibrarySearchApi.OpenLibraryDoc[] docs = cookbooks
+                .map(OpenLibrarySearchApi.OpenLibraryResult::getDocs)
+                .orElse(null);
+            out.writeInt(docs == null ? NULL_LENGTH : docs.length);
+            for (int i = 0; docs != null && i < docs.length; i++) {
+                writeString(out, docs[i].getTitle());
+                writeString(out, docs[i].getAuthor());
+                out.writeInt(docs[i].getFirstPublishYear());
+            } // for
+        } // try
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    } // write
+
+    /**
+     * Reads a snapshot written by {@link #write(Path)}. Every length and count in the file
+     * is checked against what is left of it before anything is allocated, so a damaged or
+     * truncated file is treated as no snapshot rather than failing the app's start.
+     *
+     * @param file The file to read.
+     * @return An Optional containing the snapshot, or empty if there is none or it is
+     *     damaged or from another version.
+     */
+    public static Optional<SessionSnapshot> read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getShort() != VERSION) {
+                return Optional.empty();
+            } // if
+            String term = readString(in);
+            int currentIndex = in.getInt();
+            int viewCount = Math.max(0, readCount(in, MIN_VIEW_BYTES));
+            List<RecipeView> views = new ArrayList<>(viewCount);
+            for (int i = 0; i < viewCount; i++) {
+                views.add(new RecipeView(
+                    readString(in), readString(in), readString(in), readString(in),
+                    readString(in)));
+            } // for
+
+            int articleCount = readCount(in, MIN_ARTICLE_BYTES);
+            NewsSourceAPI.NewsResponse news = null;
+            if (articleCount != NULL_LENGTH) {
+                List<NewsSourceAPI.NewsResponse.Article> articles =
+                    new ArrayList<>(articleCount);
+                for (int i = 0; i < articleCount; i++) {
+                    articles.add(new NewsSourceAPI.NewsResponse.Article(
+                        readString(in), readString(in), readString(in)));
+                } // for
+                news = new NewsSourceAPI.NewsResponse(articles);
+            } // if
+
+            int docCount = readCount(in, MIN_DOC_BYTES);
+            OpenLibrarySearchApi.OpenLibraryResult cookbooks = null;
+            if (docCount != NULL_LENGTH) {
+                OpenLibrarySearchApi.OpenLibraryDoc[] docs =
+                    new OpenLibrarySearchApi.OpenLibraryDoc[docCount];
+                for (int i = 0; i < docCount; i++) {
+                    docs[i] = new OpenLibrarySearchApi.OpenLibraryDoc(
+                        readString(in), readString(in), in.getInt());
+                } // for
+                cookbooks = new OpenLibrarySearchApi.OpenLibraryResult(docs);
+            } // if
+            return Optional.of(new SessionSnapshot(term, currentIndex, views,
+                Optional.ofNullable(news), Optional.ofNullable(cookbooks)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            // a damaged file is no snapshot; it must never stop the app from starting
+            e.printStackTrace();
+            return Optional.empty();
+        } // try
+    } // read
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+     *
+     * @param out The stream to write to.
+     * @param text The string, or {@code null}.
+     * @throws IOException if the stream could not be written.
+     */
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        } // if
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    } // writeString
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in The buffer to read from.
+     * @return The string, or {@code null}.
+     */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        } else if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        } // if
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    } // readString
+
+    /**
+     * Reads the number of items that follow, making sure that many items of at least the
+     * given size fit in what is left of the buffer.
+     *
+     * @param in The buffer to read from.
+     * @param minBytes The fewest bytes one item takes.
+     * @return The number of items, or {@link #NULL_LENGTH} if there is no list.
+     * @throws BufferUnderflowException if the count is negative or the items cannot fit.
+     */
+    private static int readCount(ByteBuffer in, int minBytes) {
+        int count = in.getInt();
+        if (count != NULL_LENGTH && (count < 0 || count > in.remaining() / minBytes)) {
+            throw new BufferUnderflowException();
+        } // if
+        return count;
+    } // readCount
+
+    /**
+     * Gets the dish that was searched.
+     * @return The search term.
+     */
+    public String getTerm() {
+        return term;
+    } // getTerm
+
+    /**
+     * Gets the index of the recipe being shown.
+     * @return The current index.
+     */
+    public int getCurrentIndex() {
+        return currentIndex;
+    } // getCurrentIndex
+
+    /**
+     * Gets the views of the recipes found.
+     * @return The recipe views, in order.
+     */
+    public List<RecipeView> getViews() {
+        return views;
+    } // getViews
+
+    /**
+     * Gets the news shown for the current recipe.
+     * @return An Optional containing the news response.
+     */
+    public Optional<NewsSourceAPI.NewsResponse> getNews() {
+        return news;
+    } // getNews
+
+    /**
+     * Gets the cookbooks found for the dish.
+     * @return An Optional containing the cookbook response.
+     */
+    public Optional<OpenLibrarySearchApi.OpenLibraryResult> getCookbooks() {
+        return cookbooks;
+    } // getCookbooks
+} // SessionSnapshot
@@ -0,0 +1,146 @@
+package cs1302.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters describing how the fetches of a {@link ResultSource} were served.
+ */
+public class SourceMetrics {
+
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder upstreamRequests = new LongAdder();
+    private final LongAdder upstreamNanos = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Records a fetch asked of the source.
+     */
+    public void recordFetch() {
+        fetches.increment();
+    } // recordFetch
+
+    /**
+     * Records a fetch answered from the cache.
+     */
+    public void recordCacheHit() {
+        cacheHits.increment();
+    } // recordCacheHit
+
+    /**
+     * Records a fetch that joined an identical fetch already in flight.
+     */
+    public void recordCoalesced() {
+        coalesced.increment();
+    } // recordCoalesced
+
+    /**
+     * Records a fetch served by a response that was fetched for another spelling of the
+     * same canonical query, which would otherwise have been a request of its own.
+     */
+    public void recordMerged() {
+        merged.increment();
+    } // recordMerged
+
+    /**
+     * Records a request sent to the upstream.
+     *
+     * @param nanos The time taken by the request in nanoseconds.
+     */
+    public void recordUpstream(long nanos) {
+        upstreamRequests.increment();
+        upstreamNanos.add(nanos);
+    } // recordUpstream
+
+    /**
+     * Records a fetch refused because of the rate limit.
+     */
+    public void recordRateLimited() {
+        rateLimited.increment();
+    } // recordRateLimited
+
+    /**
+     * Records a failed fetch.
+     */
+    public void recordError() {
+        errors.increment();
+    } // recordError
+
+    /**
+     * Gets the number of fetches asked of the source.
+     * @return The number of fetches.
+     */
+    public long getFetches() {
+        return fetches.sum();
+    } // getFetches
+
+    /**
+     * Gets the number of fetches answered from the cache.
+     * @return The number of cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    } // getCacheHits
+
+    /**
+     * Gets the number of fetches that joined an identical fetch already in flight.
+     * @return The number of coalesced fetches.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    } // getCoalesced
+
+    /**
+     * Gets the number of fetches served by a response fetched for another spelling of the
+     * same canonical query; each one is an upstream request saved by canonicalization.
+     * @return The number of merged fetches.
+     */
+    public long getMerged() {
+        return merged.sum();
+    } // getMerged
+
+    /**
+     * Gets the number of requests sent to the upstream.
+     * @return The number of upstream requests.
+     */
+    public long getUpstreamRequests() {
+        return upstreamRequests.sum();
+    } // getUpstreamRequests
+
+    /**
+     * Gets the number of fetches refused because of the rate limit.
+     * @return The number of rate limited fetches.
+     */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    } // getRateLimited
+
+    /**
+     * Gets the number of failed fetches.
+     * @return The number of errors.
+     */
+    public long getErrors() {
+        return errors.sum();
+    } // getErrors
+
+    /**
+     * Gets the mean time taken by an upstream request.
+     * @return The mean latency in milliseconds, or {@code 0} if nothing was sent.
+     */
+    public double getMeanUpstreamMillis() {
+        long requests = upstreamRequests.sum();
+        return requests == 0 ? 0 : upstreamNanos.sum() / 1e6 / requests;
+    } // getMeanUpstreamMillis
+
+    @Override
+    public String toString() {
+        return String.format(
+            "fetches=%d cacheHits=%d coalesced=%d merged=%d upstream=%d (mean %.1f ms) "
+            + "rateLimited=%d errors=%d",
+            fetches.sum(), cacheHits.sum(), coalesced.sum(), merged.sum(), upstreamRequests.sum(),
+            getMeanUpstreamMillis(), rateLimited.sum(), errors.sum());
+    } // toString
+} // SourceMetrics
@@ -0,0 +1,157 @@
+package cs1302.api;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The background task runtime of the app. Every piece of background work runs on one
+ * bounded {@link FairExecutor} instead of a thread of its own: searches in their own lanes,
+ * and short one-off jobs in a shared lane. Delayed work, such as the end of a rate limit
+ * cooldown, is a timer on a single scheduler thread rather than a sleeping thread. Every
+ * task is named, after its lane and its job, and the worker running it carries its name
+ * while it runs, so thread dumps show what the app is doing.
+ */
+public final class TaskRuntime {
+
+    private final FairExecutor workers;
+    private final FairExecutor.Lane jobs;
+    private final ScheduledThreadPoolExecutor timers;
+
+    /**
+     * Constructs a {@code TaskRuntime} and starts its threads.
+     *
+     * @param name The prefix of the runtime's thread names.
+     * @param threads The number of worker threads.
+     * @param maxQueuedPerLane The most tasks a single lane may have waiting.
+     */
+    public TaskRuntime(String name, int threads, int maxQueuedPerLane) {
+        this.workers = new FairExecutor(name, threads, maxQueuedPerLane);
+        this.jobs = workers.lane("jobs");
+        this.timers = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, name + "-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timers.setRemoveOnCancelPolicy(true);
+    } // TaskRuntime
+
+    /**
+     * Opens a new lane of the runtime's workers, whose tasks run one at a time and in order.
+     * Clearing the lane cancels the tasks still waiting in it.
+     *
+     * @param name The name of the lane.
+     * @return The lane.
+     */
+    public FairExecutor.Lane lane(String name) {
+        return workers.lane(name);
+    } // lane
+
+    /**
+     * Runs a short one-off job on the runtime's workers.
+     *
+     * @param name The name of the job.
+     * @param task The job to run.
+     * @throws java.util.concurrent.RejectedExecutionException if too many jobs are waiting.
+     */
+    public void submit(String name, Runnable task) {
+        jobs.execute(named(name, task));
+    } // submit
+
+    /**
+     * Runs a task after a delay. The timer thread only hands the task over to the given
+     * executor, so it never runs the task itself.
+     *
+     * @param name The name of the task.
+     * @param delay How long to wait before running the task.
+     * @param unit The unit of the delay.
+     * @param executor The executor to run the task on once the delay has passed.
+     * @param task The task to run.
+     * @return A future that cancels the task if it has not yet run.
+     */
+    public ScheduledFuture<?> schedule(
+        String name,
+        long delay,
+        TimeUnit unit,
+        Executor executor,
+        Runnable task) {
+        return timers.schedule(() -> executor.execute(named(name, task)), delay, unit);
+    } // schedule
+
+    /**
+     * Runs a task over and over, waiting the given period after each run has been handed
+     * over before the next one. The timer thread only hands the task over to the given
+     * executor, so it never runs the task itself.
+     *
+     * @param name The name of the task.
+     * @param period How long to wait between runs, and before the first run.
+     * @param unit The unit of the period.
+     * @param executor The executor to run the task on.
+     * @param task The task to run.
+     * @return A future that stops the repetition.
+     */
+    public ScheduledFuture<?> repeat(
+        String name,
+        long period,
+        TimeUnit unit,
+        Executor executor,
+        Runnable task) {
+        return timers.scheduleWithFixedDelay(
+            () -> executor.execute(named(name, task)), period, period, unit);
+    } // repeat
+
+    /**
+     * Wraps a task so that the thread running it carries its name while it runs.
+     *
+     * @param name The name of the task.
+     * @param task The task.
+     * @return The named task.
+     */
+    public static Runnable named(String name, Runnable task) {
+        return () -> {
+            Thread thread = Thread.currentThread();
+            String original = thread.getName();
+            thread.setName(original + " [" + name + "]");
+            try {
+                task.run();
+            } finally {
+                thread.setName(original);
+            } // try
+        };
+    } // named
+
+    /**
+     * Gets the number of tasks running right now.
+     * @return The number of active tasks.
+     */
+    public int getActiveCount() {
+        return workers.getActiveCount();
+    } // getActiveCount
+
+    /**
+     * Gets the number of tasks waiting for a worker.
+     * @return The number of queued tasks.
+     */
+    public int getQueuedCount() {
+        return workers.getQueuedCount();
+    } // getQueuedCount
+
+    /**
+     * Gets the number of timers that have not yet fired or been cancelled.
+     * @return The number of scheduled tasks.
+     */
+    public int getScheduledCount() {
+        return timers.getQueue().size();
+    } // getScheduledCount
+
+    /**
+     * Returns a string of the runtime's active, queued and scheduled task counts.
+     * @return The task counts.
+     */
+    @Override
+    public String toString() {
+        return String.format("active=%d queued=%d scheduled=%d",
+            getActiveCount(), getQueuedCount(), getScheduledCount());
+    } // toString
+} // TaskRuntime
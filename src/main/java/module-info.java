@@ -8,5 +8,11 @@ module cs1302uga.api {
     requires transitive javafx.fxml;
     requires transitive javafx.web;
     requires transitive com.google.gson;
+    requires static jdk.httpserver; // only for the LoadTest stubs, run by ./run.sh
     opens cs1302.api;
+    uses cs1302.api.ResultSource;
+    provides cs1302.api.ResultSource with
+        cs1302.api.RecipeAPI,
+        cs1302.api.NewsSourceAPI,
+        cs1302.api.OpenLibrarySearchApi;
 } // module